@@ -0,0 +1,39 @@
+package com.example.demo.config;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory side effects of a write until its transaction commits, so
+ * caches and indexes never reflect a change that is later rolled back.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /** Runs {@code change} once the current transaction commits, or at once outside a transaction. */
+    public static void run(Runnable change) {
+        if (!runIfInTransaction(change)) {
+            change.run();
+        }
+    }
+
+    /**
+     * Runs {@code change} once the current transaction commits; does nothing outside a transaction.
+     *
+     * @return whether a transaction was active
+     */
+    public static boolean runIfInTransaction(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+        return true;
+    }
+}
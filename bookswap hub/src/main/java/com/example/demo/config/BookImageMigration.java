@@ -0,0 +1,126 @@
+package com.example.demo.config;
+
+import com.example.demo.repository.BookRepository;
+import com.example.demo.service.BookService;
+import com.example.demo.service.ImageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Locale;
+
+/**
+ * One-time moves of cover images out of the database. Legacy {@code books.image_data}
+ * blobs are first copied into {@code book_images}. Hibernate's schema update never
+ * drops the old column, and dropping it is left to a deliberate schema migration, so
+ * a row in {@code app_migrations} records that the copy is done and later startups
+ * skip the scan. Every {@code book_images} row
+ * whose book has no {@code image_hash} yet is then exported into the {@link ImageStore},
+ * and covers uploaded while only the store kept them are copied back into
+ * {@code book_images}, which stays the durable copy of every cover.
+ */
+@Configuration
+public class BookImageMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImageMigration.class);
+    private static final String LEGACY_COPY = "book_images_from_image_data";
+
+    @Bean
+    @Order(1)
+    public CommandLineRunner migrateBookImages(JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate) {
+        return args -> {
+            if (!hasLegacyImageColumn(jdbcTemplate) || isApplied(jdbcTemplate, LEGACY_COPY)) {
+                return;
+            }
+            Integer moved = transactionTemplate.execute(status -> {
+                int copied = jdbcTemplate.update(
+                        "INSERT INTO book_images (book_id, data, content_type) "
+                        + "SELECT b.id, b.image_data, COALESCE(b.image_type, 'image/jpeg') FROM books b "
+                        + "WHERE b.image_data IS NOT NULL "
+                        + "AND NOT EXISTS (SELECT 1 FROM book_images i WHERE i.book_id = b.id)");
+                jdbcTemplate.update(
+                        "UPDATE books SET image_type = COALESCE(image_type, 'image/jpeg'), image_data = NULL "
+                        + "WHERE image_data IS NOT NULL");
+                // Books that never had bytes must not claim an image now that the type is the marker
+                jdbcTemplate.update(
+                        "UPDATE books SET image_type = NULL WHERE image_type IS NOT NULL "
+                        + "AND NOT EXISTS (SELECT 1 FROM book_images i WHERE i.book_id = books.id)");
+                return copied;
+            });
+            if (moved != null && moved > 0) {
+                logger.info("Moved {} cover image(s) from books.image_data to book_images", moved);
+            } else {
+                // Marked done only once a run finds nothing left, so covers written during a
+                // rolling deploy by instances still on the old mapping are moved by a later start
+                jdbcTemplate.update("INSERT INTO app_migrations (name, applied_at) VALUES (?, CURRENT_TIMESTAMP)",
+                        LEGACY_COPY);
+            }
+        };
+    }
+
+    @Bean
+    @Order(2)
+    public CommandLineRunner exportBookImages(BookRepository bookRepository, BookService bookService) {
+        return args -> {
+            int exported = 0;
+            for (long bookId : bookRepository.findIdsWithUnstoredImage()) {
+                if (bookService.exportStoredImage(bookId).isPresent()) {
+                    exported++;
+                }
+            }
+            if (exported > 0) {
+                logger.info("Exported {} cover image(s) from book_images to the image store", exported);
+            }
+        };
+    }
+
+    @Bean
+    @Order(3)
+    public CommandLineRunner backupStoredImages(BookRepository bookRepository, BookService bookService) {
+        return args -> {
+            int copied = 0;
+            for (long bookId : bookRepository.findIdsWithoutImageCopy()) {
+                if (bookService.backupStoredImage(bookId)) {
+                    copied++;
+                }
+            }
+            if (copied > 0) {
+                logger.info("Copied {} cover image(s) from the image store into book_images", copied);
+            }
+        };
+    }
+
+    private boolean isApplied(JdbcTemplate jdbcTemplate, String name) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS app_migrations "
+                + "(name VARCHAR(100) PRIMARY KEY, applied_at TIMESTAMP NOT NULL)");
+        Integer found = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM app_migrations WHERE name = ?", Integer.class, name);
+        return found != null && found > 0;
+    }
+
+    private boolean hasLegacyImageColumn(JdbcTemplate jdbcTemplate) {
+        Boolean found = jdbcTemplate.execute((Connection con) -> {
+            DatabaseMetaData meta = con.getMetaData();
+            for (String table : new String[] { "books", "BOOKS" }) {
+                try (ResultSet rs = meta.getColumns(null, null, table, null)) {
+                    while (rs.next()) {
+                        if ("image_data".equals(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+}
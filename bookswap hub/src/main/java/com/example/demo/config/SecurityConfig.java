@@ -53,7 +53,8 @@ public class SecurityConfig {
                         .requestMatchers("/admin", "/admin/**").hasRole("ADMIN")
                         // ── Public book browsing (GET only) ─────────────────
                         .requestMatchers(org.springframework.http.HttpMethod.GET,
-                                "/books", "/books/{id:[0-9]+}", "/books/image/{id:[0-9]+}")
+                                "/books", "/books/page", "/books/suggest", "/books/near", "/books/clusters",
+                                "/books/{id:[0-9]+}", "/books/image/{id:[0-9]+}")
                         .permitAll()
                         // ── Everything else requires login ───────────────────
                         .anyRequest().authenticated())
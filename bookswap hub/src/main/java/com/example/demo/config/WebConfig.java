@@ -1,7 +1,9 @@
 package com.example.demo.config;
 
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -12,18 +14,27 @@ import java.util.Objects;
 public class WebConfig implements WebMvcConfigurer {
 
     private final NotificationInterceptor notificationInterceptor;
+    private final EntityManagerFactory entityManagerFactory;
 
-    public WebConfig(NotificationInterceptor notificationInterceptor) {
+    public WebConfig(NotificationInterceptor notificationInterceptor, EntityManagerFactory entityManagerFactory) {
         this.notificationInterceptor = notificationInterceptor;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
     public void addResourceHandlers(@NonNull ResourceHandlerRegistry registry) {
-        // No filesystem resource handler needed — images served from DB
+        // No static handler for covers — BookController serves them with ETag and Range support
     }
 
     @Override
     public void addInterceptors(@NonNull InterceptorRegistry registry) {
+        // Open-in-view as Boot would register it, except for chat long-polls and sends
+        // awaiting a batched write: an open EntityManager keeps its JDBC connection until
+        // the request ends, so parked requests would drain the pool. Those handlers load
+        // everything they render eagerly.
+        OpenEntityManagerInViewInterceptor openInView = new OpenEntityManagerInViewInterceptor();
+        openInView.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(openInView).excludePathPatterns("/chat/*/messages", "/chat/*/send");
         registry.addInterceptor(Objects.requireNonNull(notificationInterceptor));
     }
 }
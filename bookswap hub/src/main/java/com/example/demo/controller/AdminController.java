@@ -1,10 +1,19 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.BookCard;
 import com.example.demo.model.*;
 import com.example.demo.repository.BookRepository;
 import com.example.demo.repository.PurchaseRequestRepository;
 import com.example.demo.repository.SaleRecordRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.search.SearchResultCache;
+import com.example.demo.service.BookIndexService;
+import com.example.demo.service.BookService;
+import com.example.demo.service.ChatAccessService;
+import com.example.demo.service.ChatWriteBehind;
+import com.example.demo.service.ImageCache;
+import com.example.demo.service.RecentChatMessages;
+import com.example.demo.service.SingleFlight;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,6 +21,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -28,29 +39,47 @@ public class AdminController {
     private final BookRepository bookRepository;
     private final PurchaseRequestRepository purchaseRequestRepository;
     private final SaleRecordRepository saleRecordRepository;
+    private final BookService bookService;
+    private final BookIndexService bookIndexService;
+    private final ImageCache imageCache;
+    private final ChatAccessService chatAccessService;
+    private final RecentChatMessages recentChatMessages;
+    private final ChatWriteBehind chatWriteBehind;
 
     public AdminController(UserRepository userRepository,
             BookRepository bookRepository,
             PurchaseRequestRepository purchaseRequestRepository,
-            SaleRecordRepository saleRecordRepository) {
+            SaleRecordRepository saleRecordRepository,
+            BookService bookService,
+            BookIndexService bookIndexService,
+            ImageCache imageCache,
+            ChatAccessService chatAccessService,
+            RecentChatMessages recentChatMessages,
+            ChatWriteBehind chatWriteBehind) {
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
         this.purchaseRequestRepository = purchaseRequestRepository;
         this.saleRecordRepository = saleRecordRepository;
+        this.bookService = bookService;
+        this.bookIndexService = bookIndexService;
+        this.imageCache = imageCache;
+        this.chatAccessService = chatAccessService;
+        this.recentChatMessages = recentChatMessages;
+        this.chatWriteBehind = chatWriteBehind;
     }
 
     // ─── Dashboard ────────────────────────────────────────────────────────────
     @GetMapping({ "", "/panel" })
     public String panel(Model model) {
         List<User> users = userRepository.findAllByRoleNot("ROLE_ADMIN");
-        List<Book> books = bookRepository.findAll();
+        List<BookCard> books = bookRepository.findAllCards();
         List<PurchaseRequest> requests = purchaseRequestRepository.findAll();
         List<SaleRecord> saleRecords = saleRecordRepository.findAllByOrderByReceivedAtDesc();
 
         long totalUsers  = users.size();
         long totalBooks  = books.size();
-        long activeBooks = books.stream().filter(b -> !b.isSold()).count();
-        long soldBooks   = books.stream().filter(Book::isSold).count();
+        long activeBooks = books.stream().filter(b -> !b.sold()).count();
+        long soldBooks   = books.stream().filter(BookCard::sold).count();
         long totalRequests = requests.size();
         long totalSaleRecords = saleRecords.size();
         BigDecimal totalSalesAmount = saleRecordRepository.getTotalSalesAmount();
@@ -76,16 +105,16 @@ public class AdminController {
 
         // Books listed per day
         Map<LocalDate, Long> booksMap = books.stream()
-                .filter(b -> b.getCreatedAt() != null)
+                .filter(b -> b.createdAt() != null)
                 .collect(Collectors.groupingBy(
-                        b -> b.getCreatedAt().toLocalDate(), Collectors.counting()));
+                        b -> b.createdAt().toLocalDate(), Collectors.counting()));
         List<Long> chartBooksData = last14.stream()
                 .map(d -> booksMap.getOrDefault(d, 0L))
                 .collect(Collectors.toList());
 
         // Books by category
         Map<BookCategory, Long> catMap = books.stream()
-                .collect(Collectors.groupingBy(Book::getCategory, Collectors.counting()));
+                .collect(Collectors.groupingBy(BookCard::category, Collectors.counting()));
         List<String> chartCatLabels = Arrays.stream(BookCategory.values())
                 .map(BookCategory::getDisplayName)
                 .collect(Collectors.toList());
@@ -124,7 +153,13 @@ public class AdminController {
     @PostMapping("/books/{id}/delete")
     public String deleteBook(@PathVariable long id, RedirectAttributes ra) {
         try {
+            // The book's purchase requests, and their chats, go with it
+            List<Long> requestIds = purchaseRequestRepository.findIdsByBookId(id);
             bookRepository.deleteById(id);
+            bookIndexService.bookRemoved(id);
+            imageCache.invalidate(id);
+            chatAccessService.requestsRemoved(requestIds);
+            recentChatMessages.forget(requestIds);
             ra.addFlashAttribute("successMessage", "Book deleted successfully.");
         } catch (Exception e) {
             ra.addFlashAttribute("errorMessage", "Failed to delete book: " + e.getMessage());
@@ -175,15 +210,16 @@ public class AdminController {
                     book.setLongitude(longitude);
                 if (address != null && !address.isBlank())
                     book.setAddress(address);
+                bookRepository.save(book);
                 if (image != null && !image.isEmpty()) {
                     try {
-                        book.setImageData(image.getBytes());
-                        book.setImageType(image.getContentType());
-                    } catch (Exception ex) {
-                        throw new RuntimeException(ex);
+                        bookService.saveImage(book, image);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
                     }
                 }
-                bookRepository.save(book);
+                // Last, so the new catalog version and ETags only ever describe the new cover
+                bookIndexService.bookSaved(book);
             });
             ra.addFlashAttribute("successMessage", "Book updated successfully.");
         } catch (Exception e) {
@@ -197,11 +233,17 @@ public class AdminController {
     public String deleteUser(@PathVariable long id, RedirectAttributes ra) {
         try {
             userRepository.findById(id).ifPresent(user -> {
+                List<Long> requestIds = purchaseRequestRepository.findIdsInvolvingUser(id);
                 purchaseRequestRepository.findByRequesterOrderByCreatedAtDesc(user)
                         .forEach(req -> purchaseRequestRepository.delete(Objects.requireNonNull(req)));
-                bookRepository.findByOwnerOrderByCreatedAtDesc(user)
-                        .forEach(book -> bookRepository.delete(Objects.requireNonNull(book)));
+                bookRepository.findByOwnerOrderByCreatedAtDesc(user).forEach(book -> {
+                    bookRepository.delete(Objects.requireNonNull(book));
+                    bookIndexService.bookRemoved(book.getId());
+                    imageCache.invalidate(book.getId());
+                });
                 userRepository.delete(Objects.requireNonNull(user));
+                chatAccessService.requestsRemoved(requestIds);
+                recentChatMessages.forget(requestIds);
             });
             ra.addFlashAttribute("successMessage", "User and their books deleted.");
         } catch (Exception e) {
@@ -209,4 +251,48 @@ public class AdminController {
         }
         return "redirect:/admin/panel";
     }
-}
\ No newline at end of file
+
+    // ─── Listing result cache counters (JSON) ─────────────────────────────────
+    @GetMapping("/search-cache")
+    @ResponseBody
+    public SearchResultCache.Stats searchCacheStats() {
+        return bookService.searchCacheStats();
+    }
+
+    // ─── Cover image cache counters (JSON) ────────────────────────────────────
+    @GetMapping("/image-cache")
+    @ResponseBody
+    public ImageCache.Stats imageCacheStats() {
+        return imageCache.stats();
+    }
+
+    // ─── Coalesced concurrent loads (JSON) ────────────────────────────────────
+    @GetMapping("/coalescing")
+    @ResponseBody
+    public Map<String, SingleFlight.Stats> coalescingStats() {
+        Map<String, SingleFlight.Stats> stats = bookService.coalescingStats();
+        stats.put("image-bytes", imageCache.loadStats());
+        return stats;
+    }
+
+    // ─── Chat participant cache counters (JSON) ───────────────────────────────
+    @GetMapping("/chat-access")
+    @ResponseBody
+    public ChatAccessService.Stats chatAccessStats() {
+        return chatAccessService.stats();
+    }
+
+    // ─── Recent chat message counters (JSON) ──────────────────────────────────
+    @GetMapping("/chat-recent")
+    @ResponseBody
+    public RecentChatMessages.Stats recentChatStats() {
+        return recentChatMessages.stats();
+    }
+
+    // ─── Chat write-behind counters (JSON) ────────────────────────────────────
+    @GetMapping("/chat-writes")
+    @ResponseBody
+    public ChatWriteBehind.Stats chatWriteStats() {
+        return chatWriteBehind.stats();
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.BookDetail;
+import com.example.demo.dto.BookFacets;
+import com.example.demo.dto.BookPage;
+import com.example.demo.dto.BookSearchCriteria;
+import com.example.demo.dto.CoverImage;
 import com.example.demo.model.*;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.search.SuggestIndex;
+import com.example.demo.service.BookIndexService;
 import com.example.demo.service.BookService;
+import com.example.demo.service.ImageCache;
+import com.example.demo.service.ImageStore;
+import com.example.demo.service.PageVersionService;
 import com.example.demo.service.PurchaseRequestService;
+import com.example.demo.service.ThumbnailService;
 import com.example.demo.service.WishlistService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -14,29 +27,67 @@ import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Controller
 public class BookController {
 
+    private static final int PAGE_SIZE = 24;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_SUGGESTIONS = 8;
+    private static final double MAX_RADIUS_KM = 500;
+    // Cluster cells a quarter of a 256 px map tile wide: zoom z shows cluster level z + 2
+    private static final int CLUSTER_LEVELS_BELOW_ZOOM = 2;
+    private static final int MAX_MAP_ZOOM = 22;
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final BookService bookService;
     private final PurchaseRequestService requestService;
     private final UserRepository userRepository;
     private final WishlistService wishlistService;
+    private final BookIndexService bookIndexService;
+    private final ImageStore imageStore;
+    private final ThumbnailService thumbnailService;
+    private final ImageCache imageCache;
+    private final PageVersionService pageVersionService;
 
     public BookController(BookService bookService,
             PurchaseRequestService requestService,
             UserRepository userRepository,
-            WishlistService wishlistService) {
+            WishlistService wishlistService,
+            BookIndexService bookIndexService,
+            ImageStore imageStore,
+            ThumbnailService thumbnailService,
+            ImageCache imageCache,
+            PageVersionService pageVersionService) {
         this.bookService = bookService;
         this.requestService = requestService;
         this.userRepository = userRepository;
         this.wishlistService = wishlistService;
+        this.bookIndexService = bookIndexService;
+        this.imageStore = imageStore;
+        this.thumbnailService = thumbnailService;
+        this.imageCache = imageCache;
+        this.pageVersionService = pageVersionService;
     }
 
     // ─── Helpers ──────────────────────────────────────────────────────────────
@@ -45,20 +96,161 @@ public class BookController {
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
-    // ─── Serve book image from database ────────────────────────────────────
+    // Pages differ per viewer, so only the browser may keep them and it must revalidate.
+    // A page showing a flash message is one-off and never tagged.
+    private static boolean notModified(String etag, ServletWebRequest webRequest) {
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(webRequest.getRequest());
+        if (flash != null && !flash.isEmpty()) {
+            return false;
+        }
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        return webRequest.checkNotModified(etag);
+    }
+
+    // Text searches rank by relevance unless the user picked an order
+    private static String defaultSort(String q, String sort) {
+        if (sort != null && !sort.isBlank()) {
+            return sort;
+        }
+        return q != null && !q.isBlank() ? "relevance" : "distance";
+    }
+
+    // ─── Serve book cover from the image cache or store ────────────────────
+    // A variant not rendered yet falls back to the original, marked for revalidation
     @GetMapping("/books/image/{id}")
-    @ResponseBody
-    public ResponseEntity<byte[]> getBookImage(@PathVariable Long id) {
-        Optional<Book> optBook = bookService.getBookById(id);
-        if (optBook.isEmpty() || !optBook.get().hasImage()) {
-            return ResponseEntity.notFound().build();
+    public void getBookImage(@PathVariable Long id,
+            @RequestParam(required = false) String variant,
+            ServletWebRequest webRequest,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<ThumbnailService.Variant> size = ThumbnailService.Variant.fromParam(variant);
+        String cacheKey = size.map(ThumbnailService.Variant::key).orElse("original");
+        ImageCache.Entry cached = imageCache.get(id, cacheKey);
+        Path file = null;
+        String etag;
+        String contentType;
+        long length;
+        long lastModified;
+        String cacheControl = "max-age=86400";
+        if (cached != null) {
+            etag = cached.etag();
+            contentType = cached.contentType();
+            length = cached.length();
+            lastModified = cached.lastModified();
+        } else {
+            long generation = imageCache.generation(id);
+            Optional<CoverImage> cover = bookService.getCover(id);
+            if (cover.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            String hash = cover.get().hash();
+            file = imageStore.path(hash);
+            contentType = cover.get().contentType();
+            etag = "\"" + hash + "\"";
+            boolean fallback = false;
+            if (size.isPresent()) {
+                Optional<Path> rendered = thumbnailService.find(hash, size.get());
+                if (rendered.isPresent()) {
+                    file = rendered.get();
+                    contentType = MediaType.IMAGE_JPEG_VALUE;
+                    etag = "\"" + hash + "-" + size.get().key() + "\"";
+                } else {
+                    thumbnailService.generate(hash);
+                    cacheControl = "no-cache";
+                    fallback = true;
+                }
+            }
+            length = Files.size(file);
+            lastModified = Files.getLastModifiedTime(file).toMillis();
+            if (!fallback) {
+                cached = imageCache.load(id, cacheKey, generation, file, length, etag, contentType, lastModified);
+            }
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(contentType);
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            List<HttpRange> ranges = parseRanges(range);
+            // Multi-range requests get the whole file, which a client must accept
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (cached != null) {
+            writeBuffer(response, cached.bytes(), start, end + 1);
+        } else {
+            sendFile(request, response, file, start, end + 1);
+        }
+    }
+
+    private static void writeBuffer(HttpServletResponse response, ByteBuffer bytes, long start, long end)
+            throws IOException {
+        bytes.position((int) start).limit((int) end);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    // Tomcat writes the file with sendfile after the handler returns when the connector supports it
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file,
+            long start, long end) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            for (long position = start; position < end; ) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String header) {
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    // A Range guarded by a stale If-Range validator is ignored and the full file sent
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
-        Book book = optBook.get();
-        HttpHeaders headers = new HttpHeaders();
-        String imageType = Optional.ofNullable(book.getImageType()).orElse("image/jpeg");
-        headers.setContentType(MediaType.parseMediaType(imageType));
-        headers.setCacheControl("max-age=86400");
-        return new ResponseEntity<>(book.getImageData(), headers, HttpStatus.OK);
     }
 
     // ─── Public book listing ──────────────────────────────────────────────────
@@ -68,16 +260,31 @@ public class BookController {
                             @RequestParam(required = false) BookCondition condition,
                             @RequestParam(required = false) BigDecimal minPrice,
                             @RequestParam(required = false) BigDecimal maxPrice,
-                            @RequestParam(required = false, defaultValue = "distance") String sort,
-                            Authentication authentication, Model model) {
+                            @RequestParam(required = false) String sort,
+                            @RequestParam(required = false) Double lat,
+                            @RequestParam(required = false) Double lng,
+                            Authentication authentication, ServletWebRequest webRequest, Model model) {
+        if (notModified(pageVersionService.catalogTag(authentication, webRequest.getRequest()), webRequest)) {
+            return null;
+        }
         boolean isLoggedIn = authentication != null
                 && authentication.isAuthenticated()
                 && !(authentication instanceof AnonymousAuthenticationToken);
 
-        List<Book> books = bookService.searchBooks(q, category, condition, minPrice, maxPrice, sort);
+        sort = defaultSort(q, sort);
+        BookSearchCriteria criteria = new BookSearchCriteria(q, category, condition, minPrice, maxPrice, sort,
+                lat, lng);
+        BookPage page = bookService.searchBooks(criteria, null, PAGE_SIZE);
+        BookFacets facets = bookService.facetCounts(criteria).orElse(null);
 
-        model.addAttribute("books", books);
-        model.addAttribute("totalBooks", books.size());
+        model.addAttribute("books", page.books());
+        model.addAttribute("nextCursor", page.nextCursor());
+        model.addAttribute("facets", facets);
+        if (facets != null) {
+            model.addAttribute("totalBooks", facets.total());
+        } else {
+            model.addAttribute("totalBooks", page.hasNext() ? bookService.countBooks(criteria) : page.books().size());
+        }
         model.addAttribute("categories", BookCategory.values());
         model.addAttribute("conditions", BookCondition.values());
         model.addAttribute("isLoggedIn", isLoggedIn);
@@ -87,6 +294,8 @@ public class BookController {
         model.addAttribute("minPrice", minPrice);
         model.addAttribute("maxPrice", maxPrice);
         model.addAttribute("sort", sort);
+        model.addAttribute("lat", criteria.latitude());
+        model.addAttribute("lng", criteria.longitude());
         if (isLoggedIn) {
             model.addAttribute("currentUsername", getCurrentUser(authentication).getUsername());
         }
@@ -94,14 +303,90 @@ public class BookController {
         return "books/list";
     }
 
+    // ─── Next page of listing cards (infinite scroll fragment) ───────────────
+    @GetMapping("/books/page")
+    public String listBooksPage(@RequestParam(required = false) String q,
+                                @RequestParam(required = false) BookCategory category,
+                                @RequestParam(required = false) BookCondition condition,
+                                @RequestParam(required = false) BigDecimal minPrice,
+                                @RequestParam(required = false) BigDecimal maxPrice,
+                                @RequestParam(required = false) String sort,
+                                @RequestParam(required = false) Double lat,
+                                @RequestParam(required = false) Double lng,
+                                @RequestParam(required = false) String cursor,
+                                HttpServletResponse response, Model model) {
+        BookSearchCriteria criteria = new BookSearchCriteria(q, category, condition, minPrice, maxPrice,
+                defaultSort(q, sort), lat, lng);
+        BookPage page = bookService.searchBooks(criteria, cursor, PAGE_SIZE);
+
+        if (page.hasNext()) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        model.addAttribute("books", page.books());
+        return "books/list :: cards";
+    }
+
+    // ─── Search-box autocomplete (JSON) ──────────────────────────────────────
+    @GetMapping("/books/suggest")
+    @ResponseBody
+    public List<SuggestIndex.Suggestion> suggest(@RequestParam(defaultValue = "") String prefix) {
+        return bookIndexService.suggest(prefix, MAX_SUGGESTIONS);
+    }
+
+    // ─── Books within a radius of a point (JSON) ──────────────────────────────
+    @GetMapping("/books/near")
+    @ResponseBody
+    public ResponseEntity<?> booksNear(@RequestParam double lat,
+                                       @RequestParam double lng,
+                                       @RequestParam(defaultValue = "10") double radiusKm,
+                                       @RequestParam(required = false) String q,
+                                       @RequestParam(required = false) BookCategory category,
+                                       @RequestParam(required = false) BookCondition condition,
+                                       @RequestParam(required = false) BigDecimal minPrice,
+                                       @RequestParam(required = false) BigDecimal maxPrice,
+                                       @RequestParam(required = false) String cursor) {
+        // Negated so NaN is rejected too
+        if (!(Math.abs(lat) <= 90 && Math.abs(lng) <= 180)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid coordinates"));
+        }
+        if (!(radiusKm > 0 && radiusKm <= MAX_RADIUS_KM)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Radius must be over 0 and at most " + (int) MAX_RADIUS_KM + " km"));
+        }
+        BookSearchCriteria criteria = new BookSearchCriteria(q, category, condition, minPrice, maxPrice, "distance");
+        return ResponseEntity.ok(bookService.booksNear(criteria, lat, lng, radiusKm, cursor, PAGE_SIZE));
+    }
+
+    // ─── Map clusters for a viewport (JSON) ───────────────────────────────────
+    @GetMapping("/books/clusters")
+    @ResponseBody
+    public ResponseEntity<?> bookClusters(@RequestParam double south,
+                                          @RequestParam double west,
+                                          @RequestParam double north,
+                                          @RequestParam double east,
+                                          @RequestParam int zoom) {
+        // Negated so NaN is rejected too; the grid does not wrap, so clients split views across 180°
+        if (!(Math.abs(south) <= 90 && Math.abs(north) <= 90 && south <= north
+                && Math.abs(west) <= 180 && Math.abs(east) <= 180 && west <= east)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid viewport"));
+        }
+        if (zoom < 0 || zoom > MAX_MAP_ZOOM) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Zoom must be between 0 and " + MAX_MAP_ZOOM));
+        }
+        return ResponseEntity.ok(bookService.mapClusters(south, west, north, east, zoom + CLUSTER_LEVELS_BELOW_ZOOM));
+    }
+
     // ─── Book detail ──────────────────────────────────────────────────────────
     @GetMapping("/books/{id}")
-    public String bookDetail(@PathVariable Long id, Authentication authentication, Model model) {
-        Optional<Book> optBook = bookService.getBookById(id);
+    public String bookDetail(@PathVariable Long id, Authentication authentication,
+            ServletWebRequest webRequest, Model model) {
+        if (notModified(pageVersionService.bookTag(id, authentication, webRequest.getRequest()), webRequest)) {
+            return null;
+        }
+        Optional<BookDetail> optBook = bookService.getBookForDisplay(id);
         if (optBook.isEmpty())
             return "redirect:/books";
 
-        Book book = optBook.get();
+        BookDetail book = optBook.get();
         model.addAttribute("book", book);
 
         boolean isOwner = false;
@@ -112,7 +397,7 @@ public class BookController {
 
         if (isLoggedIn) {
             User current = getCurrentUser(authentication);
-            isOwner = book.getOwner().getId().equals(current.getId());
+            isOwner = book.ownerId().equals(current.getId());
             model.addAttribute("currentUsername", current.getUsername());
 
             if (!isOwner) {
@@ -122,7 +407,7 @@ public class BookController {
         }
         boolean isWishlisted = false;
         if (isLoggedIn && !isOwner) {
-            isWishlisted = wishlistService.isWishlisted(getCurrentUser(authentication), book);
+            isWishlisted = wishlistService.isWishlisted(getCurrentUser(authentication), id);
         }
         model.addAttribute("isOwner", isOwner);
         model.addAttribute("hasRequested", hasRequested);
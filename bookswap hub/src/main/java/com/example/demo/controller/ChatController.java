@@ -1,19 +1,31 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ChatLine;
+import com.example.demo.dto.ChatParticipants;
 import com.example.demo.model.*;
 import com.example.demo.repository.ChatMessageRepository;
 import com.example.demo.repository.PurchaseRequestRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.ChatAccessService;
+import com.example.demo.service.ChatBroadcaster;
+import com.example.demo.service.ChatWriteBehind;
+import com.example.demo.service.RecentChatMessages;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Controller
@@ -22,16 +34,36 @@ public class ChatController {
     private final ChatMessageRepository chatRepo;
     private final PurchaseRequestRepository requestRepo;
     private final UserRepository userRepo;
+    private final ChatBroadcaster broadcaster;
+    private final ChatAccessService chatAccessService;
+    private final RecentChatMessages recentMessages;
+    private final ChatWriteBehind writeBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final long longPollMillis;
 
     private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("hh:mm a");
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    // Messages rendered with the page and loaded per scroll back; within what RecentChatMessages keeps
+    private static final int HISTORY_PAGE_SIZE = 30;
 
     public ChatController(ChatMessageRepository chatRepo,
                           PurchaseRequestRepository requestRepo,
-                          UserRepository userRepo) {
+                          UserRepository userRepo,
+                          ChatBroadcaster broadcaster,
+                          ChatAccessService chatAccessService,
+                          RecentChatMessages recentMessages,
+                          ChatWriteBehind writeBehind,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${app.chat.long-poll-timeout:25s}") Duration longPollTimeout) {
         this.chatRepo = chatRepo;
         this.requestRepo = requestRepo;
         this.userRepo = userRepo;
+        this.broadcaster = broadcaster;
+        this.chatAccessService = chatAccessService;
+        this.recentMessages = recentMessages;
+        this.writeBehind = writeBehind;
+        this.transactionTemplate = transactionTemplate;
+        this.longPollMillis = longPollTimeout.toMillis();
     }
 
     private User getCurrentUser(Authentication auth) {
@@ -44,97 +76,198 @@ public class ChatController {
     public String chatPage(@PathVariable long requestId,
                            Authentication authentication,
                            Model model) {
-        User current = getCurrentUser(authentication);
-
-        PurchaseRequest req = requestRepo.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
+        ChatParticipants access = participants(requestId);
 
         // Only the buyer or the owner may access this chat
-        boolean isBuyer = req.getRequester().getId().equals(current.getId());
-        boolean isOwner = req.getBook().getOwner().getId().equals(current.getId());
-        if (!isBuyer && !isOwner) {
+        if (!access.includes(authentication.getName())) {
             return "redirect:/books";
         }
 
         // Must be approved
-        if (req.getStatus() != RequestStatus.APPROVED) {
+        if (access.status() != RequestStatus.APPROVED) {
             return "redirect:/my-requests";
         }
 
-        List<ChatMessage> messages = chatRepo.findByRequestOrderBySentAtAsc(req);
+        User current = getCurrentUser(authentication);
+        PurchaseRequest req = requestRepo.findById(requestId)
+                .orElseThrow(() -> new RuntimeException("Request not found"));
+        boolean isBuyer = access.isBuyer(current.getUsername());
+        List<ChatLine> messages = latestLines(requestId);
 
         model.addAttribute("isLoggedIn", true);
         model.addAttribute("req", req);
         model.addAttribute("currentUser", current);
         model.addAttribute("messages", messages);
+        model.addAttribute("historyPageSize", HISTORY_PAGE_SIZE);
         model.addAttribute("otherUser", isBuyer ? req.getBook().getOwner() : req.getRequester());
         return "chat";
     }
 
     // ─── Send Message (AJAX POST) ─────────────────────────────────────────────
+    /**
+     * Stores a message and answers with it. With write-behind enabled the message is
+     * queued for a batched insert instead, and the answer comes once its batch commits,
+     * or at once with {@code 202 Accepted} and no id under {@code QUEUED} durability.
+     */
     @PostMapping("/chat/{requestId}/send")
     @ResponseBody
-    @Transactional
-    public ResponseEntity<?> sendMessage(@PathVariable long requestId,
-                                         @RequestParam String content,
-                                         Authentication authentication) {
+    public DeferredResult<ResponseEntity<?>> sendMessage(@PathVariable long requestId,
+                                                         @RequestParam String content,
+                                                         Authentication authentication) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
         if (content == null || content.isBlank()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Empty message"));
+            result.setResult(ResponseEntity.badRequest().body(Map.of("error", "Empty message")));
+            return result;
         }
 
-        User sender = getCurrentUser(authentication);
-        PurchaseRequest req = requestRepo.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
+        String username = authentication.getName();
+        ChatParticipants access = participants(requestId);
+        if (!access.includes(username)) {
+            result.setResult(ResponseEntity.status(403).body(Map.of("error", "Forbidden")));
+            return result;
+        }
 
-        boolean isBuyer = req.getRequester().getId().equals(sender.getId());
-        boolean isOwner = req.getBook().getOwner().getId().equals(sender.getId());
-        if (!isBuyer && !isOwner) {
-            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        if (writeBehind.isEnabled()) {
+            CompletableFuture<ChatLine> stored =
+                    writeBehind.submit(requestId, access.idOf(username), username, content.trim());
+            if (stored == null) {
+                result.setResult(ResponseEntity.status(503).body(Map.of("error", "Chat is busy, try again")));
+            } else if (writeBehind.durability() == ChatWriteBehind.Durability.QUEUED) {
+                result.setResult(ResponseEntity.accepted().body(Map.of("queued", true)));
+            } else {
+                stored.whenComplete((line, error) -> result.setResult(error == null
+                        ? ResponseEntity.ok(toMap(line, username))
+                        : ResponseEntity.internalServerError().body(Map.of("error", "Message not sent"))));
+            }
+            return result;
         }
 
-        ChatMessage msg = new ChatMessage();
-        msg.setRequest(req);
-        msg.setSender(sender);
-        msg.setContent(content.trim());
-        chatRepo.save(msg);
+        // One transaction, not a transaction per repository call; none for the write-behind path
+        ChatLine line = transactionTemplate.execute(status -> {
+            // References only: the insert needs the keys, not the rows
+            ChatMessage msg = new ChatMessage();
+            msg.setRequest(requestRepo.getReferenceById(requestId));
+            msg.setSender(userRepo.getReferenceById(access.idOf(username)));
+            msg.setContent(content.trim());
+            chatRepo.save(msg);
+            ChatLine sent = new ChatLine(msg.getId(), username, msg.getContent(), msg.getSentAt());
+            // Registered first so woken polls find the message in memory
+            recentMessages.messageSent(requestId, sent);
+            broadcaster.messageSent(requestId);
+            return sent;
+        });
 
-        return ResponseEntity.ok(toMap(msg, sender.getUsername()));
+        result.setResult(ResponseEntity.ok(toMap(line, username)));
+        return result;
     }
 
     // ─── Poll New Messages (AJAX GET) ─────────────────────────────────────────
+    /**
+     * Messages after {@code after}, oldest first. With {@code wait=true} an empty answer
+     * is held open until a message arrives or the long-poll timeout passes, and the
+     * request thread is released meanwhile; without it the call answers at once.
+     * <p>
+     * With {@code before} it instead returns the page of older history just below that
+     * id, oldest first, for scrolling back.
+     */
     @GetMapping("/chat/{requestId}/messages")
     @ResponseBody
-    public ResponseEntity<?> pollMessages(@PathVariable long requestId,
-                                          @RequestParam(defaultValue = "0") Long after,
-                                          Authentication authentication) {
-        User current = getCurrentUser(authentication);
-        PurchaseRequest req = requestRepo.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Request not found"));
+    public DeferredResult<ResponseEntity<?>> pollMessages(@PathVariable long requestId,
+                                                          @RequestParam(defaultValue = "0") Long after,
+                                                          @RequestParam(required = false) Long before,
+                                                          @RequestParam(defaultValue = "false") boolean wait,
+                                                          Authentication authentication) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(longPollMillis,
+                () -> ResponseEntity.ok(List.of()));
+        // Runs without open-in-view (see WebConfig): nothing here may rely on lazy loading
+        String username = authentication.getName();
+        ChatParticipants access = chatAccessService.participants(requestId);
+        if (access == null || !access.includes(username)) {
+            result.setResult(ResponseEntity.status(403).body(Map.of("error", "Forbidden")));
+            return result;
+        }
+        if (before != null) {
+            List<Map<String, Object>> older = toMaps(
+                    chatRepo.findBeforeWithSender(requestId, before, Limit.of(HISTORY_PAGE_SIZE)), username);
+            result.setResult(ResponseEntity.ok(older));
+            return result;
+        }
 
-        boolean isBuyer = req.getRequester().getId().equals(current.getId());
-        boolean isOwner = req.getBook().getOwner().getId().equals(current.getId());
-        if (!isBuyer && !isOwner) {
-            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        if (wait) {
+            // Subscribed before the check below so a message committed in between still wakes this poll
+            ChatBroadcaster.Subscription subscription = broadcaster.subscribe(requestId,
+                    () -> result.setResult(ResponseEntity.ok(newMessages(requestId, after, username))));
+            result.onCompletion(subscription::cancel);
+        }
+        List<Map<String, Object>> messages = newMessages(requestId, after, username);
+        if (!wait || !messages.isEmpty()) {
+            result.setResult(ResponseEntity.ok(messages));
         }
+        return result;
+    }
 
-        List<Map<String, Object>> result = chatRepo
-                .findByRequestAndIdGreaterThanOrderBySentAtAsc(req, after)
+    private List<Map<String, Object>> newMessages(long requestId, long after, String currentUsername) {
+        return linesAfter(requestId, after)
                 .stream()
-                .map(m -> toMap(m, current.getUsername()))
+                .map(line -> toMap(line, currentUsername))
                 .collect(Collectors.toList());
+    }
+
+    // The newest page of history, from memory when it holds it, else read and remembered
+    private List<ChatLine> latestLines(long requestId) {
+        List<ChatLine> lines = recentMessages.latest(requestId, HISTORY_PAGE_SIZE);
+        if (lines == null) {
+            long stamp = recentMessages.stamp(requestId);
+            lines = oldestFirst(chatRepo.findLatestWithSender(requestId, Limit.of(HISTORY_PAGE_SIZE)));
+            // A full page holds every message from its first id on; a short one is the whole chat
+            long floor = lines.size() < HISTORY_PAGE_SIZE ? 0 : lines.get(0).id() - 1;
+            recentMessages.seed(requestId, floor, lines, stamp);
+        }
+        return lines;
+    }
 
-        return ResponseEntity.ok(result);
+    // Recent history from memory when it holds everything after the id, else read and remembered
+    private List<ChatLine> linesAfter(long requestId, long after) {
+        List<ChatLine> lines = recentMessages.after(requestId, after);
+        if (lines == null) {
+            long stamp = recentMessages.stamp(requestId);
+            lines = chatRepo.findNewWithSender(requestId, after).stream().map(ChatLine::of).toList();
+            recentMessages.seed(requestId, after, lines, stamp);
+        }
+        return lines;
     }
 
     // ─── Helper ───────────────────────────────────────────────────────────────
-    private Map<String, Object> toMap(ChatMessage m, String currentUsername) {
+    private static List<ChatLine> oldestFirst(List<ChatMessage> newestFirst) {
+        List<ChatLine> lines = new ArrayList<>(newestFirst.size());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            lines.add(ChatLine.of(newestFirst.get(i)));
+        }
+        return lines;
+    }
+
+    private List<Map<String, Object>> toMaps(List<ChatMessage> newestFirst, String currentUsername) {
+        return oldestFirst(newestFirst).stream()
+                .map(line -> toMap(line, currentUsername))
+                .collect(Collectors.toList());
+    }
+
+    private ChatParticipants participants(long requestId) {
+        ChatParticipants access = chatAccessService.participants(requestId);
+        if (access == null) {
+            throw new RuntimeException("Request not found");
+        }
+        return access;
+    }
+
+    private Map<String, Object> toMap(ChatLine line, String currentUsername) {
         return Map.of(
-                "id", m.getId(),
-                "sender", m.getSender().getUsername(),
-                "content", m.getContent(),
-                "time", m.getSentAt() != null ? m.getSentAt().format(TIME_FMT) : "",
-                "date", m.getSentAt() != null ? m.getSentAt().format(DATE_FMT) : "",
-                "own", m.getSender().getUsername().equals(currentUsername)
+                "id", line.id(),
+                "sender", line.sender(),
+                "content", line.content(),
+                "time", line.sentAt() != null ? line.sentAt().format(TIME_FMT) : "",
+                "date", line.sentAt() != null ? line.sentAt().format(DATE_FMT) : "",
+                "own", line.sender().equals(currentUsername)
         );
     }
 }
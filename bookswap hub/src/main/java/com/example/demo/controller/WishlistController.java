@@ -1,8 +1,8 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.WishlistItem;
 import com.example.demo.model.Book;
 import com.example.demo.model.User;
-import com.example.demo.model.Wishlist;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.BookService;
 import com.example.demo.service.WishlistService;
@@ -39,7 +39,7 @@ public class WishlistController {
     @GetMapping("/wishlist")
     public String wishlistPage(Authentication authentication, Model model) {
         User user = getCurrentUser(authentication);
-        List<Wishlist> items = wishlistService.getWishlistForUser(user);
+        List<WishlistItem> items = wishlistService.getWishlistForUser(user);
         model.addAttribute("isLoggedIn", true);
         model.addAttribute("wishlistItems", items);
         return "wishlist";
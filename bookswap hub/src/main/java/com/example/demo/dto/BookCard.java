@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.Book;
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * What a book card on a list page shows, read straight from the row: no
+ * description, no lazy owner proxy, and the image reduced to a flag.
+ */
+public record BookCard(Long id,
+                       String title,
+                       String author,
+                       BigDecimal price,
+                       BookCategory category,
+                       BookCondition condition,
+                       Double latitude,
+                       Double longitude,
+                       boolean sold,
+                       LocalDateTime createdAt,
+                       String ownerUsername,
+                       boolean hasImage) {
+
+    public static BookCard of(Book book) {
+        return new BookCard(book.getId(), book.getTitle(), book.getAuthor(), book.getPrice(), book.getCategory(),
+                book.getCondition(), book.getLatitude(), book.getLongitude(), book.isSold(), book.getCreatedAt(),
+                book.getOwner().getUsername(), book.hasImage());
+    }
+}
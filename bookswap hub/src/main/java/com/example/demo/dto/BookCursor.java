@@ -0,0 +1,51 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in the book listing: the sort key of the last book shown
+ * and its id as a tie-breaker. Serialized as URL-safe Base64 so clients treat
+ * it as opaque.
+ */
+public record BookCursor(String sortKey, long id) {
+
+    public static BookCursor of(Object sortKey, long id) {
+        String key = sortKey instanceof BigDecimal d ? d.toPlainString() : String.valueOf(sortKey);
+        return new BookCursor(key, id);
+    }
+
+    public String encode() {
+        String raw = sortKey + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or {@code null} if the token is missing or malformed
+     */
+    public static BookCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep < 0) {
+                return null;
+            }
+            return new BookCursor(raw.substring(0, sep), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public BigDecimal priceKey() {
+        return new BigDecimal(sortKey);
+    }
+
+    public LocalDateTime dateKey() {
+        return LocalDateTime.parse(sortKey);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+
+/**
+ * What the book detail page shows, read straight from the row. Immutable and
+ * detached, so one load can be handed to every request waiting on it.
+ */
+public record BookDetail(Long id,
+                         String title,
+                         String author,
+                         String description,
+                         BigDecimal price,
+                         BookCategory category,
+                         BookCondition condition,
+                         Double latitude,
+                         Double longitude,
+                         String address,
+                         boolean sold,
+                         Long ownerId,
+                         String ownerUsername,
+                         boolean hasImage) {
+}
@@ -0,0 +1,58 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listing counts for the current filter set. Each facet ignores its own filter
+ * (the category counts answer "how many would I get if I picked this category
+ * instead"), while {@code total} applies every filter.
+ */
+public record BookFacets(int total,
+                         Map<BookCategory, Integer> categories,
+                         Map<BookCondition, Integer> conditions,
+                         List<PriceBucket> priceBuckets) {
+
+    /** Boundaries between consecutive price buckets, in rupees. */
+    public static final List<BigDecimal> PRICE_BOUNDS = List.of(
+            BigDecimal.valueOf(100), BigDecimal.valueOf(250), BigDecimal.valueOf(500), BigDecimal.valueOf(1000));
+
+    /**
+     * Books priced in [min, max], the same range the min/max filters select, so a
+     * book priced exactly on a boundary counts in both neighbouring buckets.
+     * A {@code null} min or max leaves that side open.
+     */
+    public record PriceBucket(BigDecimal min, BigDecimal max, int count) {
+
+        public String label() {
+            if (min == null) {
+                return "Up to ₹" + max.toPlainString();
+            }
+            return max == null ? "₹" + min.toPlainString() + "+" : "₹" + min.toPlainString() + "–" + max.toPlainString();
+        }
+    }
+
+    public int category(BookCategory category) {
+        return categories.getOrDefault(category, 0);
+    }
+
+    public int condition(BookCondition condition) {
+        return conditions.getOrDefault(condition, 0);
+    }
+
+    public static int priceBucketCount() {
+        return PRICE_BOUNDS.size() + 1;
+    }
+
+    public static BigDecimal bucketMin(int bucket) {
+        return bucket == 0 ? null : PRICE_BOUNDS.get(bucket - 1);
+    }
+
+    public static BigDecimal bucketMax(int bucket) {
+        return bucket == PRICE_BOUNDS.size() ? null : PRICE_BOUNDS.get(bucket);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * One slice of the book listing plus the opaque cursor for the next slice,
+ * or {@code null} when this is the last one.
+ */
+public record BookPage(List<BookCard> books, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Normalized filter set for the public book listing. Blank text becomes
+ * {@code null} and unknown sort values fall back to {@code date_desc}, so two
+ * requests that select the same books compare equal. The caller's position only
+ * matters to the distance sort; it is rounded to three decimals (~100 m) and
+ * dropped for every other sort.
+ */
+public record BookSearchCriteria(String q,
+                                 BookCategory category,
+                                 BookCondition condition,
+                                 BigDecimal minPrice,
+                                 BigDecimal maxPrice,
+                                 String sort,
+                                 Double latitude,
+                                 Double longitude) {
+
+    public static final String DEFAULT_SORT = "date_desc";
+
+    public BookSearchCriteria {
+        q = (q == null || q.isBlank()) ? null : q.trim().toLowerCase(Locale.ROOT);
+        minPrice = minPrice == null ? null : minPrice.stripTrailingZeros();
+        maxPrice = maxPrice == null ? null : maxPrice.stripTrailingZeros();
+        sort = switch (sort == null ? DEFAULT_SORT : sort) {
+            case "price_asc", "price_desc", "date_asc", "distance" -> sort;
+            case "relevance" -> q != null ? sort : DEFAULT_SORT;
+            default -> DEFAULT_SORT;
+        };
+        boolean validOrigin = "distance".equals(sort)
+                && latitude != null && Math.abs(latitude) <= 90
+                && longitude != null && Math.abs(longitude) <= 180;
+        latitude = validOrigin ? round(latitude) : null;
+        longitude = validOrigin ? round(longitude) : null;
+    }
+
+    public BookSearchCriteria(String q, BookCategory category, BookCondition condition,
+                              BigDecimal minPrice, BigDecimal maxPrice, String sort) {
+        this(q, category, condition, minPrice, maxPrice, sort, null, null);
+    }
+
+    public boolean hasText() {
+        return q != null;
+    }
+
+    public boolean hasNonTextFilters() {
+        return category != null || condition != null || minPrice != null || maxPrice != null;
+    }
+
+    public boolean hasOrigin() {
+        return latitude != null;
+    }
+
+    private static double round(double degrees) {
+        return Math.round(degrees * 1000) / 1000.0;
+    }
+}
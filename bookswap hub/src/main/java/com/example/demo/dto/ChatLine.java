@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.ChatMessage;
+
+import java.time.LocalDateTime;
+
+/**
+ * One chat message as the chat shows it, independent of who is reading: the
+ * sender reduced to a username, so lines can be kept and shared in memory.
+ */
+public record ChatLine(Long id, String sender, String content, LocalDateTime sentAt) {
+
+    /** Needs the message's sender loaded. */
+    public static ChatLine of(ChatMessage message) {
+        return new ChatLine(message.getId(), message.getSender().getUsername(), message.getContent(),
+                message.getSentAt());
+    }
+}
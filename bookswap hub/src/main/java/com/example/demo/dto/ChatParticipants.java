@@ -0,0 +1,31 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.RequestStatus;
+
+/**
+ * Who may use a purchase request's chat: the buyer who sent it and the owner of
+ * the book, read straight from the row, with the request's status.
+ */
+public record ChatParticipants(Long buyerId,
+                               String buyerUsername,
+                               Long ownerId,
+                               String ownerUsername,
+                               RequestStatus status) {
+
+    public boolean isBuyer(String username) {
+        return buyerUsername.equals(username);
+    }
+
+    public boolean isOwner(String username) {
+        return ownerUsername.equals(username);
+    }
+
+    public boolean includes(String username) {
+        return isBuyer(username) || isOwner(username);
+    }
+
+    /** The user id behind a participant's username. */
+    public Long idOf(String username) {
+        return isBuyer(username) ? buyerId : ownerId;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo.dto;
+
+/**
+ * A book's cover as the image store knows it: the SHA-256 of its bytes, which
+ * names the stored file and doubles as a strong ETag, and the upload's MIME type.
+ */
+public record CoverImage(String hash, String contentType) {
+}
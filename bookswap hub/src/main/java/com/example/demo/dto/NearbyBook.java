@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+/**
+ * A listing card and its great-circle distance in kilometres from the caller's point.
+ */
+public record NearbyBook(BookCard book, double distanceKm) {
+}
@@ -0,0 +1,10 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * One slice of the books within a radius, nearest first, with how many there are
+ * in all and the opaque cursor for the next slice, or {@code null} after the last.
+ */
+public record NearbyPage(List<NearbyBook> books, int total, String nextCursor) {
+}
@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A saved book on the wishlist page and when it was saved.
+ */
+public record WishlistItem(BookCard book, LocalDateTime savedAt) {
+
+    // Flat form used by the JPQL constructor expression in WishlistRepository
+    public WishlistItem(Long id, String title, String author, BigDecimal price, BookCategory category,
+                        BookCondition condition, Double latitude, Double longitude, boolean sold,
+                        LocalDateTime createdAt, String ownerUsername, boolean hasImage, LocalDateTime savedAt) {
+        this(new BookCard(id, title, author, price, category, condition, latitude, longitude, sold, createdAt,
+                ownerUsername, hasImage), savedAt);
+    }
+}
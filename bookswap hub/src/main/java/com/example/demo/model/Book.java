@@ -7,7 +7,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books",
+       indexes = {
+               @Index(name = "idx_books_updated_at", columnList = "updated_at"),
+               @Index(name = "idx_books_lat_lng", columnList = "latitude, longitude")
+       })
 public class Book {
 
     @Id
@@ -29,12 +33,13 @@ public class Book {
     @Column(name = "image_path")
     private String imagePath;
 
-    @Column(name = "image_data", columnDefinition = "BYTEA")
-    private byte[] imageData;
-
+    // Cover bytes live in the image store under this SHA-256; a non-null type marks that one exists.
     @Column(name = "image_type")
     private String imageType;
 
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private BookCategory category;
@@ -65,9 +70,19 @@ public class Book {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Drives the delta replayed over the search snapshot at startup
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 
     // ─── Constructors ─────────────────────────────────────────────────────────
@@ -123,14 +138,6 @@ public class Book {
         this.imagePath = imagePath;
     }
 
-    public byte[] getImageData() {
-        return imageData;
-    }
-
-    public void setImageData(byte[] imageData) {
-        this.imageData = imageData;
-    }
-
     public String getImageType() {
         return imageType;
     }
@@ -139,8 +146,16 @@ public class Book {
         this.imageType = imageType;
     }
 
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+
     public boolean hasImage() {
-        return imageData != null && imageData.length > 0;
+        return imageType != null;
     }
 
     public BookCategory getCategory() {
@@ -206,4 +221,8 @@ public class Book {
     public void setCreatedAt(LocalDateTime t) {
         this.createdAt = t;
     }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
 }
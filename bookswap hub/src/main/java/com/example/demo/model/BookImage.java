@@ -0,0 +1,54 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Cover image bytes for a {@link Book}, kept in their own table so that catalog
+ * queries and status updates on {@code books} never read or rewrite blob data.
+ * Shares its primary key with the owning book.
+ */
+@Entity
+@Table(name = "book_images")
+public class BookImage {
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Book book;
+
+    @Column(name = "data", nullable = false, columnDefinition = "BYTEA")
+    private byte[] data;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    // ─── Constructors ─────────────────────────────────────────────────────────
+    public BookImage() {
+    }
+
+    public BookImage(Book book, byte[] data, String contentType) {
+        this.book = book;
+        this.data = data;
+        this.contentType = contentType;
+    }
+
+    // ─── Getters & Setters ────────────────────────────────────────────────────
+    public Long getBookId() { return bookId; }
+    public void setBookId(Long bookId) { this.bookId = bookId; }
+
+    public Book getBook() { return book; }
+    public void setBook(Book book) { this.book = book; }
+
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+}
@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages",
+       indexes = @Index(name = "idx_chat_messages_request_id", columnList = "request_id, id"))
 public class ChatMessage {
 
     @Id
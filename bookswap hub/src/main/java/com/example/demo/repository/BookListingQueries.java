@@ -0,0 +1,135 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.BookCard;
+import com.example.demo.dto.BookSearchCriteria;
+import com.example.demo.search.BitmapFilterIndex.Order;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listing queries for the public catalog, one fixed JPQL string per shape: which
+ * filters are present, the sort, and whether a keyset cursor applies. Values are
+ * always bound as parameters, so a shape yields the same string every time and
+ * Hibernate translates it once and reuses the plan from its query plan cache —
+ * a Criteria tree, by contrast, is translated again on every call.
+ * <p>
+ * There are at most 2^5 filter combinations × 4 orders × 2 cursor states, so the
+ * cache stays small without eviction.
+ */
+@Repository
+public class BookListingQueries {
+
+    private static final String SELECT_CARDS = "select new com.example.demo.dto.BookCard("
+            + BookRepository.CARD_COLUMNS + ") from Book b join b.owner o";
+    private static final String SELECT_COUNT = "select count(b) from Book b";
+
+    // Which optional predicates a query carries; equal shapes share one JPQL string
+    private record Shape(boolean text, boolean category, boolean condition, boolean minPrice, boolean maxPrice,
+                         Order order, boolean keyset) {
+
+        static Shape of(BookSearchCriteria criteria, Order order, boolean keyset) {
+            return new Shape(criteria.hasText(), criteria.category() != null, criteria.condition() != null,
+                    criteria.minPrice() != null, criteria.maxPrice() != null, order, keyset);
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final Map<Shape, String> pageQueries = new ConcurrentHashMap<>();
+    private final Map<Shape, String> countQueries = new ConcurrentHashMap<>();
+
+    public BookListingQueries(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * @return unsold books matching {@code criteria} in the given order, starting strictly
+     *         after (afterKey, afterId) — or from the top when afterKey is {@code null} —
+     *         at most {@code limit}
+     */
+    public List<BookCard> page(BookSearchCriteria criteria, Order order, Comparable<?> afterKey, long afterId,
+            int limit) {
+        Shape shape = Shape.of(criteria, order, afterKey != null);
+        String jpql = pageQueries.computeIfAbsent(shape, BookListingQueries::pageJpql);
+        TypedQuery<BookCard> query = entityManager.createQuery(jpql, BookCard.class);
+        bindFilters(query, criteria);
+        if (afterKey != null) {
+            query.setParameter("afterKey", afterKey);
+            query.setParameter("afterId", afterId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    public long count(BookSearchCriteria criteria) {
+        // Order is irrelevant to a count; a fixed one keeps the shape cache small
+        Shape shape = Shape.of(criteria, Order.DATE_DESC, false);
+        String jpql = countQueries.computeIfAbsent(shape, s -> SELECT_COUNT + where(s));
+        TypedQuery<Long> query = entityManager.createQuery(jpql, Long.class);
+        bindFilters(query, criteria);
+        return query.getSingleResult();
+    }
+
+    // ─── Query text ───────────────────────────────────────────────────────────
+    private static String pageJpql(Shape shape) {
+        StringBuilder jpql = new StringBuilder(SELECT_CARDS).append(where(shape));
+        Order order = shape.order();
+        String column = order == Order.PRICE_ASC || order == Order.PRICE_DESC ? "b.price" : "b.createdAt";
+        boolean ascending = order == Order.PRICE_ASC || order == Order.DATE_ASC;
+        if (shape.keyset()) {
+            // key > k OR (key = k AND id > i), mirrored for descending orders
+            String cmp = ascending ? " > " : " < ";
+            jpql.append(" and (").append(column).append(cmp).append(":afterKey or (")
+                    .append(column).append(" = :afterKey and b.id").append(cmp).append(":afterId))");
+        }
+        String direction = ascending ? " asc" : " desc";
+        jpql.append(" order by ").append(column).append(direction);
+        if (column.equals("b.createdAt")) {
+            // Undated rows rank as the newest, as in the filter index, whatever the database default
+            jpql.append(ascending ? " nulls last" : " nulls first");
+        }
+        return jpql.append(", b.id").append(direction).toString();
+    }
+
+    private static String where(Shape shape) {
+        StringBuilder where = new StringBuilder(" where b.sold = false");
+        if (shape.text()) {
+            where.append(" and (lower(b.title) like :pattern or lower(b.author) like :pattern)");
+        }
+        if (shape.category()) {
+            where.append(" and b.category = :category");
+        }
+        if (shape.condition()) {
+            where.append(" and b.condition = :condition");
+        }
+        if (shape.minPrice()) {
+            where.append(" and b.price >= :minPrice");
+        }
+        if (shape.maxPrice()) {
+            where.append(" and b.price <= :maxPrice");
+        }
+        return where.toString();
+    }
+
+    private static void bindFilters(TypedQuery<?> query, BookSearchCriteria criteria) {
+        if (criteria.hasText()) {
+            query.setParameter("pattern", "%" + criteria.q() + "%");
+        }
+        if (criteria.category() != null) {
+            query.setParameter("category", criteria.category());
+        }
+        if (criteria.condition() != null) {
+            query.setParameter("condition", criteria.condition());
+        }
+        if (criteria.minPrice() != null) {
+            query.setParameter("minPrice", criteria.minPrice());
+        }
+        if (criteria.maxPrice() != null) {
+            query.setParameter("maxPrice", criteria.maxPrice());
+        }
+    }
+}
@@ -1,19 +1,89 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.BookCard;
+import com.example.demo.dto.BookDetail;
+import com.example.demo.dto.CoverImage;
 import com.example.demo.model.Book;
 import com.example.demo.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
+public interface BookRepository extends JpaRepository<Book, Long> {
+
+    // BookCard constructor arguments; queries alias the book as b and its owner as o
+    String CARD_COLUMNS = "b.id, b.title, b.author, b.price, b.category, b.condition, b.latitude, b.longitude, "
+            + "b.sold, b.createdAt, o.username, case when b.imageType is not null then true else false end";
 
     List<Book> findBySoldFalseOrderByCreatedAtDesc();
 
     List<Book> findByOwnerOrderByCreatedAtDesc(User owner);
 
     List<Book> findBySoldFalseAndOwnerNotOrderByCreatedAtDesc(User owner);
+
+    @Query("select new com.example.demo.dto.BookDetail(b.id, b.title, b.author, b.description, b.price, "
+            + "b.category, b.condition, b.latitude, b.longitude, b.address, b.sold, o.id, o.username, "
+            + "case when b.imageType is not null then true else false end) "
+            + "from Book b join b.owner o where b.id = :id")
+    Optional<BookDetail> findDetailById(long id);
+
+    // ─── Search snapshot delta ────────────────────────────────────────────────
+    @Query("select b.id from Book b where b.sold = false")
+    List<Long> findUnsoldIds();
+
+    // Sold books included: the snapshot may still list them
+    @Query("select b from Book b where b.updatedAt > :since")
+    List<Book> findChangedSince(LocalDateTime since);
+
+    List<Book> findBySoldFalseAndIdIn(Collection<Long> ids);
+
+    // Rows written before updated_at existed; stamped once so they are not replayed on every start
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.updatedAt = coalesce(b.createdAt, :now) where b.updatedAt is null")
+    int stampMissingUpdatedAt(LocalDateTime now);
+
+    // ─── Card projections for list pages ──────────────────────────────────────
+    @Query("select new com.example.demo.dto.BookCard(" + CARD_COLUMNS + ") "
+            + "from Book b join b.owner o where b.id in :ids")
+    List<BookCard> findCardsByIdIn(Collection<Long> ids);
+
+    @Query("select new com.example.demo.dto.BookCard(" + CARD_COLUMNS + ") "
+            + "from Book b join b.owner o where o = :owner order by b.createdAt desc")
+    List<BookCard> findCardsByOwner(User owner);
+
+    @Query("select new com.example.demo.dto.BookCard(" + CARD_COLUMNS + ") "
+            + "from Book b join b.owner o order by b.createdAt desc")
+    List<BookCard> findAllCards();
+
+    // Bounding-box prefilter over idx_books_lat_lng; callers check the exact distance
+    @Query("select new com.example.demo.dto.BookCard(" + CARD_COLUMNS + ") "
+            + "from Book b join b.owner o where b.sold = false "
+            + "and b.latitude between :minLat and :maxLat and b.longitude between :minLng and :maxLng")
+    List<BookCard> findCardsInBox(double minLat, double maxLat, double minLng, double maxLng);
+
+    // ─── Cover images ─────────────────────────────────────────────────────────
+    @Query("select new com.example.demo.dto.CoverImage(b.imageHash, b.imageType) "
+            + "from Book b where b.id = :id and b.imageType is not null")
+    Optional<CoverImage> findCoverById(long id);
+
+    @Query("select b.id from Book b where b.imageType is not null and b.imageHash is null")
+    List<Long> findIdsWithUnstoredImage();
+
+    @Query("select b.id from Book b where b.imageHash is not null "
+            + "and not exists (select i.bookId from BookImage i where i.bookId = b.id)")
+    List<Long> findIdsWithoutImageCopy();
+
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.imageHash = :hash where b.id = :id")
+    int updateImageHash(long id, String hash);
 }
@@ -1,14 +1,25 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.ChatMessage;
-import com.example.demo.model.PurchaseRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findByRequestOrderBySentAtAsc(PurchaseRequest request);
+    // Sender fetched with the messages so they can be rendered outside the request's session
+    @Query("select m from ChatMessage m join fetch m.sender "
+            + "where m.request.id = :requestId and m.id > :lastId order by m.id asc")
+    List<ChatMessage> findNewWithSender(long requestId, long lastId);
 
-    List<ChatMessage> findByRequestAndIdGreaterThanOrderBySentAtAsc(PurchaseRequest request, Long lastId);
+    // Keyset pages walking back from the newest message, newest first
+    @Query("select m from ChatMessage m join fetch m.sender "
+            + "where m.request.id = :requestId order by m.id desc")
+    List<ChatMessage> findLatestWithSender(long requestId, Limit limit);
+
+    @Query("select m from ChatMessage m join fetch m.sender "
+            + "where m.request.id = :requestId and m.id < :beforeId order by m.id desc")
+    List<ChatMessage> findBeforeWithSender(long requestId, long beforeId, Limit limit);
 }
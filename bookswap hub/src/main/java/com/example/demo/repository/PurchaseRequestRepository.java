@@ -1,9 +1,11 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.ChatParticipants;
 import com.example.demo.model.Book;
 import com.example.demo.model.PurchaseRequest;
 import com.example.demo.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -21,4 +23,16 @@ public interface PurchaseRequestRepository extends JpaRepository<PurchaseRequest
     Optional<PurchaseRequest> findByBookAndRequester(Book book, User requester);
 
     boolean existsByBookAndRequester(Book book, User requester);
+
+    @Query("select new com.example.demo.dto.ChatParticipants(u.id, u.username, o.id, o.username, r.status) "
+            + "from PurchaseRequest r join r.requester u join r.book b join b.owner o where r.id = :requestId")
+    Optional<ChatParticipants> findParticipants(long requestId);
+
+    // Read before a delete, to tell the chat caches which requests went with it
+    @Query("select r.id from PurchaseRequest r where r.book.id = :bookId")
+    List<Long> findIdsByBookId(long bookId);
+
+    @Query("select r.id from PurchaseRequest r join r.book b "
+            + "where r.requester.id = :userId or b.owner.id = :userId")
+    List<Long> findIdsInvolvingUser(long userId);
 }
@@ -1,9 +1,11 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.WishlistItem;
 import com.example.demo.model.Book;
 import com.example.demo.model.User;
 import com.example.demo.model.Wishlist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,9 +16,13 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
 
     boolean existsByUserAndBook(User user, Book book);
 
-    Optional<Wishlist> findByUserAndBook(User user, Book book);
+    boolean existsByUserAndBookId(User user, long bookId);
 
-    List<Wishlist> findByUserOrderBySavedAtDesc(User user);
+    Optional<Wishlist> findByUserAndBook(User user, Book book);
 
     long countByBook(Book book);
+
+    @Query("select new com.example.demo.dto.WishlistItem(" + BookRepository.CARD_COLUMNS + ", w.savedAt) "
+            + "from Wishlist w join w.book b join b.owner o where w.user = :user order by w.savedAt desc")
+    List<WishlistItem> findItemsByUser(User user);
 }
@@ -0,0 +1,277 @@
+package com.example.demo.search;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmap index over the listing filters of unsold books.
+ * <p>
+ * Each book gets a dense ordinal. One bitset per {@link BookCategory} and per
+ * {@link BookCondition}, plus a bitset of live (unsold, indexed) ordinals, turn
+ * a filter combination into a few word-wise ANDs. Two ordinal arrays kept sorted
+ * by (price, id) and (createdAt, id) answer price ranges by binary search and
+ * produce pages in listing order by walking forwards or backwards from a cursor.
+ * Both arrays are maintained with a binary-search insert or remove per write.
+ * Ordinals of removed books are handed to the next new book.
+ * <p>
+ * Not thread-safe for writes; {@code BookIndexService} serializes writers
+ * against readers.
+ */
+public class BitmapFilterIndex {
+
+    /** Listing orders the sorted arrays can serve; ties break on id in the same direction. */
+    public enum Order {
+        PRICE_ASC, PRICE_DESC, DATE_ASC, DATE_DESC
+    }
+
+    private final Map<Long, Integer> ordinalByBook = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet[] byCategory = newBitSets(BookCategory.values().length);
+    private final BitSet[] byCondition = newBitSets(BookCondition.values().length);
+
+    private long[] bookIds = new long[256];
+    private BigDecimal[] prices = new BigDecimal[256];
+    private LocalDateTime[] createdAts = new LocalDateTime[256];
+    private final OrdinalPool ordinals = new OrdinalPool();
+
+    private int[] byPrice = new int[256];
+    private int[] byDate = new int[256];
+    private int sortedSize;
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    public void put(BookDocument doc) {
+        Integer existing = ordinalByBook.get(doc.id());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            unlink(ordinal);
+        } else {
+            ordinal = ordinals.acquire();
+            ensureCapacity(ordinals.limit());
+            ordinalByBook.put(doc.id(), ordinal);
+            bookIds[ordinal] = doc.id();
+        }
+        prices[ordinal] = doc.price();
+        createdAts[ordinal] = doc.createdAt();
+        live.set(ordinal);
+        byCategory[doc.category().ordinal()].set(ordinal);
+        byCondition[doc.condition().ordinal()].set(ordinal);
+
+        int pricePos = -priceSearch(doc.price(), doc.id()) - 1;
+        insertAt(byPrice, pricePos, ordinal);
+        int datePos = -dateSearch(doc.createdAt(), doc.id()) - 1;
+        insertAt(byDate, datePos, ordinal);
+        sortedSize++;
+    }
+
+    public void remove(long bookId) {
+        Integer ordinal = ordinalByBook.remove(bookId);
+        if (ordinal != null) {
+            unlink(ordinal);
+            prices[ordinal] = null;
+            createdAts[ordinal] = null;
+            ordinals.release(ordinal);
+        }
+    }
+
+    public void clear() {
+        ordinalByBook.clear();
+        live.clear();
+        for (BitSet bits : byCategory) {
+            bits.clear();
+        }
+        for (BitSet bits : byCondition) {
+            bits.clear();
+        }
+        Arrays.fill(prices, 0, ordinals.limit(), null);
+        Arrays.fill(createdAts, 0, ordinals.limit(), null);
+        ordinals.clear();
+        sortedSize = 0;
+    }
+
+    public int size() {
+        return live.cardinality();
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * @return ordinals of live books passing every given filter; {@code null} means "any"
+     */
+    public BitSet filter(BookCategory category, BookCondition condition, BigDecimal minPrice, BigDecimal maxPrice) {
+        BitSet result = (BitSet) live.clone();
+        if (category != null) {
+            result.and(byCategory[category.ordinal()]);
+        }
+        if (condition != null) {
+            result.and(byCondition[condition.ordinal()]);
+        }
+        if (minPrice != null || maxPrice != null) {
+            int from = minPrice == null ? 0 : -priceSearch(minPrice, Long.MIN_VALUE) - 1;
+            int to = maxPrice == null ? sortedSize : -priceSearch(maxPrice, Long.MAX_VALUE) - 1;
+            BitSet inRange = new BitSet(ordinals.limit());
+            for (int i = from; i < to; i++) {
+                inRange.set(byPrice[i]);
+            }
+            result.and(inRange);
+        }
+        return result;
+    }
+
+    /**
+     * @return ordinals of the given books that are in the index
+     */
+    public BitSet ordinalsOf(long[] ids) {
+        BitSet result = new BitSet(ordinals.limit());
+        for (long id : ids) {
+            Integer ordinal = ordinalByBook.get(id);
+            if (ordinal != null) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    public boolean accepts(BitSet filter, long bookId) {
+        Integer ordinal = ordinalByBook.get(bookId);
+        return ordinal != null && filter.get(ordinal);
+    }
+
+    /**
+     * @return book ids for ordinals in {@code filter}, in the given order, starting
+     *         strictly after (afterKey, afterId) — or from the top when afterKey is
+     *         {@code null} — at most {@code limit}
+     */
+    public long[] page(BitSet filter, Order order, Comparable<?> afterKey, long afterId, int limit) {
+        int[] sorted = order == Order.PRICE_ASC || order == Order.PRICE_DESC ? byPrice : byDate;
+        boolean ascending = order == Order.PRICE_ASC || order == Order.DATE_ASC;
+
+        int start;
+        if (afterKey == null) {
+            start = ascending ? 0 : sortedSize - 1;
+        } else {
+            int pos = sorted == byPrice
+                    ? priceSearch((BigDecimal) afterKey, afterId)
+                    : dateSearch((LocalDateTime) afterKey, afterId);
+            // pos >= 0: the cursor row itself; otherwise the insertion point
+            start = pos >= 0 ? (ascending ? pos + 1 : pos - 1) : (ascending ? -pos - 1 : -pos - 2);
+        }
+
+        long[] out = new long[Math.min(limit, filter.cardinality())];
+        int n = 0;
+        int step = ascending ? 1 : -1;
+        for (int i = start; i >= 0 && i < sortedSize && n < out.length; i += step) {
+            int ordinal = sorted[i];
+            if (filter.get(ordinal)) {
+                out[n++] = bookIds[ordinal];
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private void unlink(int ordinal) {
+        if (!live.get(ordinal)) {
+            return;
+        }
+        int pricePos = priceSearch(prices[ordinal], bookIds[ordinal]);
+        removeAt(byPrice, pricePos);
+        int datePos = dateSearch(createdAts[ordinal], bookIds[ordinal]);
+        removeAt(byDate, datePos);
+        sortedSize--;
+
+        live.clear(ordinal);
+        for (BitSet bits : byCategory) {
+            bits.clear(ordinal);
+        }
+        for (BitSet bits : byCondition) {
+            bits.clear(ordinal);
+        }
+    }
+
+    // Binary search over byPrice for (price, id); same contract as Arrays.binarySearch
+    private int priceSearch(BigDecimal price, long id) {
+        int lo = 0;
+        int hi = sortedSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int ordinal = byPrice[mid];
+            int cmp = prices[ordinal].compareTo(price);
+            if (cmp == 0) {
+                cmp = Long.compare(bookIds[ordinal], id);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private int dateSearch(LocalDateTime createdAt, long id) {
+        int lo = 0;
+        int hi = sortedSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int ordinal = byDate[mid];
+            int cmp = compareDates(createdAts[ordinal], createdAt);
+            if (cmp == 0) {
+                cmp = Long.compare(bookIds[ordinal], id);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // Undated rows rank above every date: last ascending, first descending, as the listing query orders them
+    private static int compareDates(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? 1 : -1);
+        }
+        return a.compareTo(b);
+    }
+
+    private void insertAt(int[] sorted, int pos, int ordinal) {
+        System.arraycopy(sorted, pos, sorted, pos + 1, sortedSize - pos);
+        sorted[pos] = ordinal;
+    }
+
+    private void removeAt(int[] sorted, int pos) {
+        System.arraycopy(sorted, pos + 1, sorted, pos, sortedSize - pos - 1);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(needed, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        createdAts = Arrays.copyOf(createdAts, capacity);
+        byPrice = Arrays.copyOf(byPrice, capacity);
+        byDate = Arrays.copyOf(byDate, capacity);
+    }
+
+    private static BitSet[] newBitSets(int count) {
+        BitSet[] bits = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            bits[i] = new BitSet();
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.search;
+
+import com.example.demo.model.Book;
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The filterable fields of an unsold book as held by the in-memory indexes,
+ * detached from JPA so it can be read outside a persistence context.
+ */
+public record BookDocument(long id,
+                           BigDecimal price,
+                           BookCategory category,
+                           BookCondition condition,
+                           Double latitude,
+                           Double longitude,
+                           LocalDateTime createdAt) {
+
+    public static BookDocument of(Book book) {
+        return new BookDocument(book.getId(), book.getPrice(), book.getCategory(), book.getCondition(),
+                book.getLatitude(), book.getLongitude(), book.getCreatedAt());
+    }
+
+    public boolean hasLocation() {
+        return latitude != null && longitude != null;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.search;
+
+import com.example.demo.model.Book;
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file holding every indexed book's search fields, so a restart can
+ * rebuild the indexes without reading the whole catalog from the database.
+ * <p>
+ * Layout: magic, format version, a fingerprint of the category and condition
+ * constants (entries store their ordinals), the time up to which the file is
+ * known to be complete, the entry count, the entries, and a CRC32 of all that.
+ * A file that is missing, from another format or enum layout, truncated or
+ * corrupt reads as {@code null} and the caller falls back to a full load.
+ * Reads go through a memory mapping; writes go to a temporary file that is
+ * moved over the old one.
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x42535850; // "BSXP"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HAS_LATITUDE = 1;
+    private static final int HAS_LONGITUDE = 2;
+    private static final int HAS_CREATED_AT = 4;
+
+    /**
+     * One indexed book. The description is kept as its normalized tokens, which is
+     * all the text index reads from it; title and author keep their spelling for
+     * suggestions.
+     */
+    public record Entry(BookDocument document, String title, String author, String description) {
+
+        public static Entry of(Book book) {
+            return new Entry(BookDocument.of(book), book.getTitle(), book.getAuthor(),
+                    String.join(" ", Tokenizer.tokenize(book.getDescription())));
+        }
+    }
+
+    /** Entries as of {@code completeUntil}: changes stamped after it may be missing. */
+    public record Contents(LocalDateTime completeUntil, List<Entry> entries) {
+    }
+
+    private CatalogSnapshot() {
+    }
+
+    // ─── Writing ──────────────────────────────────────────────────────────────
+    public static void write(Path file, LocalDateTime completeUntil, Collection<Entry> entries) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "snapshot-", ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(enumFingerprint());
+                writeDateTime(out, completeUntil);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    writeEntry(out, entry);
+                }
+                // Covers everything before it; the bytes of the value itself are not checked
+                out.writeLong(crc.getValue());
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        BookDocument doc = entry.document();
+        out.writeLong(doc.id());
+        byte[] unscaled = doc.price().unscaledValue().toByteArray();
+        out.writeInt(doc.price().scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+        out.writeByte(doc.category().ordinal());
+        out.writeByte(doc.condition().ordinal());
+        int flags = (doc.latitude() != null ? HAS_LATITUDE : 0)
+                | (doc.longitude() != null ? HAS_LONGITUDE : 0)
+                | (doc.createdAt() != null ? HAS_CREATED_AT : 0);
+        out.writeByte(flags);
+        if (doc.latitude() != null) {
+            out.writeDouble(doc.latitude());
+        }
+        if (doc.longitude() != null) {
+            out.writeDouble(doc.longitude());
+        }
+        if (doc.createdAt() != null) {
+            writeDateTime(out, doc.createdAt());
+        }
+        writeString(out, entry.title());
+        writeString(out, entry.author());
+        writeString(out, entry.description());
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ─── Reading ──────────────────────────────────────────────────────────────
+    /**
+     * @return the file's contents, or {@code null} if there is no usable snapshot
+     */
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Long.BYTES || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer body = mapped.slice(0, (int) size - Long.BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != mapped.getLong((int) size - Long.BYTES)) {
+                return null;
+            }
+            return parse(body);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Contents parse(ByteBuffer in) {
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION || in.getInt() != enumFingerprint()) {
+                return null;
+            }
+            LocalDateTime completeUntil = readDateTime(in);
+            int count = in.getInt();
+            List<Entry> entries = new ArrayList<>(count);
+            BookCategory[] categories = BookCategory.values();
+            BookCondition[] conditions = BookCondition.values();
+            for (int i = 0; i < count; i++) {
+                long id = in.getLong();
+                int scale = in.getInt();
+                byte[] unscaled = new byte[in.get() & 0xFF];
+                in.get(unscaled);
+                BigDecimal price = new BigDecimal(new BigInteger(unscaled), scale);
+                BookCategory category = categories[in.get()];
+                BookCondition condition = conditions[in.get()];
+                int flags = in.get();
+                Double latitude = (flags & HAS_LATITUDE) != 0 ? in.getDouble() : null;
+                Double longitude = (flags & HAS_LONGITUDE) != 0 ? in.getDouble() : null;
+                LocalDateTime createdAt = (flags & HAS_CREATED_AT) != 0 ? readDateTime(in) : null;
+                BookDocument doc = new BookDocument(id, price, category, condition, latitude, longitude, createdAt);
+                entries.add(new Entry(doc, readString(in), readString(in), readString(in)));
+            }
+            return in.hasRemaining() ? null : new Contents(completeUntil, entries);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Entries store enum ordinals; renaming, adding or reordering constants invalidates old files
+    private static int enumFingerprint() {
+        return Arrays.hashCode(new Object[] {
+                Arrays.toString(BookCategory.values()), Arrays.toString(BookCondition.values()) });
+    }
+}
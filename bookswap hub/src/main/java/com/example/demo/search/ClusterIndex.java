@@ -0,0 +1,194 @@
+package com.example.demo.search;
+
+import com.example.demo.model.BookCategory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-cell aggregates of located books for map clustering, at every level of a
+ * quadtree over latitude/longitude.
+ * <p>
+ * Level {@code L} cuts the globe into square cells {@code 360 / 2^L} degrees on a
+ * side, so each cell splits into four at the next level. Every cell holding books
+ * keeps their count, coordinate sums (for the centroid) and per-category counts;
+ * a write adjusts one cell per level, and a viewport read visits only the cells
+ * of one level that overlap it. Memory grows with books × levels in the worst
+ * case, when every book sits alone in its cell. Longitude does not wrap at the
+ * antimeridian.
+ * <p>
+ * Not thread-safe for writes; {@code BookIndexService} serializes writers
+ * against readers.
+ */
+public class ClusterIndex {
+
+    private static final int TOP_CATEGORIES = 3;
+    private static final BookCategory[] CATEGORIES = BookCategory.values();
+
+    /** Books of one cell: how many, their mean position, and their most common categories. */
+    public record Cluster(int count, double latitude, double longitude, List<BookCategory> topCategories) {
+    }
+
+    /** The clusters of one level overlapping a viewport, and that level's cell size. */
+    public record View(int level, double cellDegrees, List<Cluster> clusters) {
+    }
+
+    private record Point(double lat, double lng, BookCategory category) {
+    }
+
+    private final int maxLevel;
+    private final int maxCellsInView;
+    // Occupied cells of each level, by packed (row, col)
+    private final List<Map<Long, Cell>> levels;
+    private final Map<Long, Point> points = new HashMap<>();
+
+    /**
+     * @param maxLevel       finest level kept; finer requests are served from it
+     * @param maxCellsInView most cells a viewport may span; wider views use a coarser level
+     */
+    public ClusterIndex(int maxLevel, int maxCellsInView) {
+        this.maxLevel = maxLevel;
+        this.maxCellsInView = maxCellsInView;
+        this.levels = new ArrayList<>(maxLevel + 1);
+        for (int level = 0; level <= maxLevel; level++) {
+            levels.add(new HashMap<>());
+        }
+    }
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    public void put(long bookId, double lat, double lng, BookCategory category) {
+        Point point = new Point(lat, lng, category);
+        Point old = points.put(bookId, point);
+        if (point.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            adjust(old, -1);
+        }
+        adjust(point, 1);
+    }
+
+    public void remove(long bookId) {
+        Point old = points.remove(bookId);
+        if (old != null) {
+            adjust(old, -1);
+        }
+    }
+
+    public void clear() {
+        levels.forEach(Map::clear);
+        points.clear();
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * Clusters of the cells overlapping the viewport at {@code level}, or at the finest
+     * coarser level whose cells over the viewport number at most {@code maxCellsInView}.
+     * Bounds are inclusive and must satisfy {@code south <= north}, {@code west <= east}.
+     */
+    public View view(double south, double west, double north, double east, int level) {
+        level = Math.max(0, Math.min(level, maxLevel));
+        while (level > 0 && cellCount(south, west, north, east, level) > maxCellsInView) {
+            level--;
+        }
+        double size = cellDegrees(level);
+        int fromRow = row(south, size);
+        int toRow = row(north, size);
+        int fromCol = col(west, size);
+        int toCol = col(east, size);
+        Map<Long, Cell> cells = levels.get(level);
+
+        List<Cluster> clusters = new ArrayList<>();
+        if (cellCount(south, west, north, east, level) > cells.size()) {
+            // Fewer occupied cells than cells in view: test each occupied cell instead
+            for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+                long k = e.getKey();
+                int r = (int) (k >> 32);
+                int c = (int) k;
+                if (r >= fromRow && r <= toRow && c >= fromCol && c <= toCol) {
+                    clusters.add(e.getValue().toCluster());
+                }
+            }
+        } else {
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromCol; c <= toCol; c++) {
+                    Cell cell = cells.get(key(r, c));
+                    if (cell != null) {
+                        clusters.add(cell.toCluster());
+                    }
+                }
+            }
+        }
+        return new View(level, size, clusters);
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private void adjust(Point point, int delta) {
+        for (int level = 0; level <= maxLevel; level++) {
+            double size = cellDegrees(level);
+            long key = key(row(point.lat(), size), col(point.lng(), size));
+            Map<Long, Cell> cells = levels.get(level);
+            Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+            cell.count += delta;
+            cell.sumLat += delta * point.lat();
+            cell.sumLng += delta * point.lng();
+            cell.categories[point.category().ordinal()] += delta;
+            if (cell.count == 0) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    private long cellCount(double south, double west, double north, double east, int level) {
+        double size = cellDegrees(level);
+        return (long) (row(north, size) - row(south, size) + 1) * (col(east, size) - col(west, size) + 1);
+    }
+
+    private static double cellDegrees(int level) {
+        return 360.0 / (1L << level);
+    }
+
+    private static int row(double lat, double size) {
+        return (int) Math.floor((lat + 90) / size);
+    }
+
+    private static int col(double lng, double size) {
+        return (int) Math.floor((lng + 180) / size);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private static final class Cell {
+        int count;
+        double sumLat;
+        double sumLng;
+        final int[] categories = new int[CATEGORIES.length];
+
+        Cluster toCluster() {
+            List<BookCategory> top = new ArrayList<>(TOP_CATEGORIES);
+            boolean[] taken = new boolean[categories.length];
+            for (int n = 0; n < TOP_CATEGORIES; n++) {
+                int best = -1;
+                for (int i = 0; i < categories.length; i++) {
+                    if (!taken[i] && categories[i] > 0 && (best < 0 || categories[i] > categories[best])) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                taken[best] = true;
+                top.add(CATEGORIES[best]);
+            }
+            return new Cluster(count, sumLat / count, sumLng / count, top);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.example.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Uniform latitude/longitude grid over located books for nearest-first lookups.
+ * <p>
+ * A nearest-first query visits square rings of cells around the caller's cell,
+ * computing exact distances for the books it finds, and stops once it holds
+ * enough results that are provably closer than anything in the rings not yet
+ * visited. A radius query visits only the cells overlapping the circle's
+ * bounding box and compares each point by its squared chord to the query point
+ * (straight-line distance between unit vectors, which orders points exactly as
+ * the great-circle distance does) so the trigonometric distance is computed only
+ * for points near the radius, the cursor or the page boundary. Coordinates live
+ * in primitive arrays indexed by a dense ordinal. Longitude does not wrap at the
+ * antimeridian.
+ * <p>
+ * Not thread-safe for writes; {@code BookIndexService} serializes writers
+ * against readers.
+ */
+public class GeoGridIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    // Relative and absolute margins inside which chord comparisons defer to the exact distance
+    private static final double CHORD_RELATIVE_SLACK = 1e-9;
+    private static final double CHORD_ABSOLUTE_SLACK = 1e-18;
+
+    /** Great-circle distance in kilometres between two points. */
+    @FunctionalInterface
+    public interface DistanceFunction {
+        double km(double lat1, double lon1, double lat2, double lon2);
+    }
+
+    /** A book and its distance from the query point. */
+    public record Neighbor(long bookId, double distanceKm) {
+    }
+
+    /** One page of the books within a radius, and how many there are in all. */
+    public record Within(List<Neighbor> page, int total) {
+    }
+
+    /** Latitude/longitude bounds of a circle; every point within the radius lies inside. */
+    public record Box(double minLat, double maxLat, double minLng, double maxLng) {
+
+        /**
+         * The smallest box holding every point within {@code radiusKm} of (lat, lng): the
+         * latitude span is the angular radius, and the longitude span is the widest the
+         * circle reaches, at the latitude where its meridians touch it. A circle over a
+         * pole takes every longitude.
+         */
+        public static Box around(double lat, double lng, double radiusKm) {
+            double angular = radiusKm / EARTH_RADIUS_KM;
+            double minLat = lat - Math.toDegrees(angular);
+            double maxLat = lat + Math.toDegrees(angular);
+            double sinAngular = Math.sin(Math.min(angular, Math.PI / 2));
+            double cosLat = Math.cos(Math.toRadians(lat));
+            if (minLat <= -90 || maxLat >= 90 || sinAngular >= cosLat) {
+                return new Box(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180);
+            }
+            double span = Math.toDegrees(Math.asin(sinAngular / cosLat));
+            return new Box(minLat, maxLat, Math.max(lng - span, -180), Math.min(lng + span, 180));
+        }
+    }
+
+    private final double cellDegrees;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<Long, Integer> ordinalByBook = new HashMap<>();
+
+    private long[] bookIds = new long[256];
+    private double[] lats = new double[256];
+    private double[] lngs = new double[256];
+    // Unit vector of each point
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private double[] zs = new double[256];
+    private long[] cellKeys = new long[256];
+    private int maxOrdinal;
+
+    // Bounding box of occupied cells, used to stop ring expansion early
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxCol = Integer.MIN_VALUE;
+
+    public GeoGridIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    public void put(long bookId, double lat, double lng) {
+        Integer ordinal = ordinalByBook.get(bookId);
+        if (ordinal != null) {
+            cells.get(cellKeys[ordinal]).remove(ordinal);
+            dropIfEmpty(cellKeys[ordinal]);
+        } else {
+            ordinal = maxOrdinal++;
+            ensureCapacity(maxOrdinal);
+            ordinalByBook.put(bookId, ordinal);
+            bookIds[ordinal] = bookId;
+        }
+        int row = row(lat);
+        int col = col(lng);
+        long key = key(row, col);
+        lats[ordinal] = lat;
+        lngs[ordinal] = lng;
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lng);
+        xs[ordinal] = Math.cos(phi) * Math.cos(lambda);
+        ys[ordinal] = Math.cos(phi) * Math.sin(lambda);
+        zs[ordinal] = Math.sin(phi);
+        cellKeys[ordinal] = key;
+        cells.computeIfAbsent(key, k -> new Cell()).add(ordinal);
+
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    public void remove(long bookId) {
+        Integer ordinal = ordinalByBook.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        cells.get(cellKeys[ordinal]).remove(ordinal);
+        dropIfEmpty(cellKeys[ordinal]);
+    }
+
+    public void clear() {
+        cells.clear();
+        ordinalByBook.clear();
+        maxOrdinal = 0;
+        minRow = minCol = Integer.MAX_VALUE;
+        maxRow = maxCol = Integer.MIN_VALUE;
+    }
+
+    public int size() {
+        return ordinalByBook.size();
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * Returns up to {@code limit} accepted books ordered by (distance, id), starting
+     * strictly after the position ({@code afterKm}, {@code afterId}); pass
+     * {@code afterKm < 0} to start from the nearest.
+     */
+    public List<Neighbor> nearest(double lat, double lng, double afterKm, long afterId, int limit,
+                                  LongPredicate accept, DistanceFunction distance) {
+        if (cells.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int row = row(lat);
+        int col = col(lng);
+        int lastRing = Math.max(Math.max(row - minRow, maxRow - row), Math.max(col - minCol, maxCol - col));
+
+        Found found = new Found();
+        for (int ring = 0; ring <= lastRing; ring++) {
+            if (ringCellCount(ring) > cells.size()) {
+                // Sparse grid: cheaper to sweep every occupied cell not yet visited
+                for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+                    long k = e.getKey();
+                    int r = (int) (k >> 32);
+                    int c = (int) k;
+                    if (Math.max(Math.abs(r - row), Math.abs(c - col)) >= ring) {
+                        visit(e.getValue(), lat, lng, afterKm, afterId, accept, distance, found);
+                    }
+                }
+                break;
+            }
+            visitRing(row, col, ring, lat, lng, afterKm, afterId, accept, distance, found);
+            if (found.countWithin(minDistanceBeyondRing(lat, ring)) >= limit) {
+                break;
+            }
+        }
+        return found.smallest(limit);
+    }
+
+    /**
+     * Returns up to {@code limit} accepted books within {@code radiusKm}, ordered by
+     * (distance, id) and starting strictly after ({@code afterKm}, {@code afterId}),
+     * with the number of accepted books in the whole radius. {@code accept} may be
+     * {@code null} to take every book.
+     */
+    public Within within(double lat, double lng, double radiusKm, double afterKm, long afterId, int limit,
+                         LongPredicate accept, DistanceFunction distance) {
+        Box box = Box.around(lat, lng, radiusKm);
+        int fromRow = Math.max(row(box.minLat()), minRow);
+        int toRow = Math.min(row(box.maxLat()), maxRow);
+        int fromCol = Math.max(col(box.minLng()), minCol);
+        int toCol = Math.min(col(box.maxLng()), maxCol);
+        if (fromRow > toRow || fromCol > toCol) {
+            return new Within(List.of(), 0);
+        }
+
+        Query query = new Query(lat, lng, radiusKm, afterKm, afterId);
+        Closest closest = new Closest(Math.max(limit, 0));
+        int total = 0;
+        long boxCells = (long) (toRow - fromRow + 1) * (toCol - fromCol + 1);
+        if (boxCells > cells.size()) {
+            // Fewer occupied cells than cells in the box: test each occupied cell instead
+            for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+                long k = e.getKey();
+                int r = (int) (k >> 32);
+                int c = (int) k;
+                if (r >= fromRow && r <= toRow && c >= fromCol && c <= toCol) {
+                    total += scan(e.getValue(), query, accept, distance, closest);
+                }
+            }
+        } else {
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromCol; c <= toCol; c++) {
+                    Cell cell = cells.get(key(r, c));
+                    if (cell != null) {
+                        total += scan(cell, query, accept, distance, closest);
+                    }
+                }
+            }
+        }
+        return new Within(closest.sorted(), total);
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    /**
+     * Counts the accepted points of a cell within the radius and offers those past the
+     * cursor to {@code closest}. Chord comparisons settle every point clearly inside or
+     * outside a bound; the exact distance decides the rest, so results are exactly those
+     * of comparing {@code distance} values.
+     */
+    private int scan(Cell cell, Query query, LongPredicate accept, DistanceFunction distance, Closest closest) {
+        int within = 0;
+        int[] ordinals = cell.ordinals;
+        for (int i = 0; i < cell.size; i++) {
+            int ordinal = ordinals[i];
+            double dx = xs[ordinal] - query.x;
+            double dy = ys[ordinal] - query.y;
+            double dz = zs[ordinal] - query.z;
+            double chord = dx * dx + dy * dy + dz * dz;
+            if (chord > query.radiusChord + slack(query.radiusChord)) {
+                continue;
+            }
+            long id = bookIds[ordinal];
+            if (accept != null && !accept.test(id)) {
+                continue;
+            }
+            double d = Double.NaN;
+            if (chord >= query.radiusChord - slack(query.radiusChord)) {
+                d = distance.km(query.lat, query.lng, lats[ordinal], lngs[ordinal]);
+                if (d > query.radiusKm) {
+                    continue;
+                }
+            }
+            within++;
+            if (chord < query.afterChord - slack(query.afterChord)
+                    || (closest.isFull() && chord > closest.maxChord() + slack(closest.maxChord()))) {
+                continue;
+            }
+            if (Double.isNaN(d)) {
+                d = distance.km(query.lat, query.lng, lats[ordinal], lngs[ordinal]);
+            }
+            if (d > query.afterKm || (d == query.afterKm && id > query.afterId)) {
+                closest.offer(id, d, chord);
+            }
+        }
+        return within;
+    }
+
+    // Squared chord between unit vectors for a great-circle distance
+    private static double chordFor(double km) {
+        double half = Math.sin(Math.min(km / EARTH_RADIUS_KM, Math.PI) / 2);
+        return 4 * half * half;
+    }
+
+    private static double slack(double chord) {
+        return chord * CHORD_RELATIVE_SLACK + CHORD_ABSOLUTE_SLACK;
+    }
+
+    /** A radius query's origin and bounds, as distances and as squared chords. */
+    private static final class Query {
+        final double lat;
+        final double lng;
+        final double x;
+        final double y;
+        final double z;
+        final double radiusKm;
+        final double radiusChord;
+        final double afterKm;
+        final long afterId;
+        final double afterChord;
+
+        Query(double lat, double lng, double radiusKm, double afterKm, long afterId) {
+            this.lat = lat;
+            this.lng = lng;
+            double phi = Math.toRadians(lat);
+            double lambda = Math.toRadians(lng);
+            this.x = Math.cos(phi) * Math.cos(lambda);
+            this.y = Math.cos(phi) * Math.sin(lambda);
+            this.z = Math.sin(phi);
+            this.radiusKm = radiusKm;
+            this.radiusChord = chordFor(radiusKm);
+            this.afterKm = afterKm;
+            this.afterId = afterId;
+            this.afterChord = afterKm < 0 ? Double.NEGATIVE_INFINITY : chordFor(afterKm);
+        }
+    }
+
+    private void visitRing(int row, int col, int ring, double lat, double lng, double afterKm, long afterId,
+                           LongPredicate accept, DistanceFunction distance, Found found) {
+        for (int r = row - ring; r <= row + ring; r++) {
+            boolean edgeRow = r == row - ring || r == row + ring;
+            for (int c = col - ring; c <= col + ring; c += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                Cell cell = cells.get(key(r, c));
+                if (cell != null) {
+                    visit(cell, lat, lng, afterKm, afterId, accept, distance, found);
+                }
+            }
+        }
+    }
+
+    private void visit(Cell cell, double lat, double lng, double afterKm, long afterId,
+                       LongPredicate accept, DistanceFunction distance, Found found) {
+        for (int i = 0; i < cell.size; i++) {
+            int ordinal = cell.ordinals[i];
+            long id = bookIds[ordinal];
+            double d = distance.km(lat, lng, lats[ordinal], lngs[ordinal]);
+            if ((d > afterKm || (d == afterKm && id > afterId)) && accept.test(id)) {
+                found.add(id, d);
+            }
+        }
+    }
+
+    /**
+     * Lower bound on the distance from (lat, *) to any point in a ring beyond {@code ring}:
+     * at least {@code ring} whole cells away along one axis. Along a meridian that is
+     * R·Δφ; along a parallel the great circle is shorter than the parallel arc, so use
+     * 2R·cos(φ)·sin(Δλ/2) at the highest latitude the band can reach.
+     */
+    private double minDistanceBeyondRing(double lat, int ring) {
+        double span = Math.toRadians(ring * cellDegrees);
+        double alongMeridian = EARTH_RADIUS_KM * span;
+        double worstLat = Math.min(90.0, Math.abs(lat) + (ring + 1) * cellDegrees);
+        double alongParallel = 2 * EARTH_RADIUS_KM * Math.cos(Math.toRadians(worstLat))
+                * Math.sin(Math.min(span, Math.PI) / 2);
+        return Math.min(alongMeridian, alongParallel);
+    }
+
+    private static int ringCellCount(int ring) {
+        return ring == 0 ? 1 : 8 * ring;
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor(lng / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private void dropIfEmpty(long key) {
+        Cell cell = cells.get(key);
+        if (cell != null && cell.size == 0) {
+            cells.remove(key);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(needed, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        lats = Arrays.copyOf(lats, capacity);
+        lngs = Arrays.copyOf(lngs, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        cellKeys = Arrays.copyOf(cellKeys, capacity);
+    }
+
+    /** Unordered ordinals in one cell. */
+    private static final class Cell {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        void remove(int ordinal) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    ordinals[i] = ordinals[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /** The {@code limit} smallest (distance, id) pairs offered, kept in a max-heap with their chords. */
+    private static final class Closest {
+        final long[] ids;
+        final double[] dists;
+        final double[] chords;
+        int size;
+
+        Closest(int limit) {
+            ids = new long[limit];
+            dists = new double[limit];
+            chords = new double[limit];
+        }
+
+        boolean isFull() {
+            return size == ids.length;
+        }
+
+        // Chord of the farthest pair held; only meaningful when full
+        double maxChord() {
+            return size == 0 ? Double.NEGATIVE_INFINITY : chords[0];
+        }
+
+        void offer(long id, double d, double chord) {
+            if (size < ids.length) {
+                ids[size] = id;
+                dists[size] = d;
+                chords[size] = chord;
+                siftUp(size++);
+            } else if (size > 0 && greater(dists[0], ids[0], d, id)) {
+                ids[0] = id;
+                dists[0] = d;
+                chords[0] = chord;
+                siftDown(0, size);
+            }
+        }
+
+        // Heap-sorts in place: repeatedly moves the largest to the end
+        List<Neighbor> sorted() {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            List<Neighbor> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(new Neighbor(ids[i], dists[i]));
+            }
+            return out;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!greater(dists[i], ids[i], dists[parent], ids[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < end && greater(dists[left], ids[left], dists[largest], ids[largest])) {
+                    largest = left;
+                }
+                if (right < end && greater(dists[right], ids[right], dists[largest], ids[largest])) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private static boolean greater(double d1, long id1, double d2, long id2) {
+            return d1 > d2 || (d1 == d2 && id1 > id2);
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double d = dists[a];
+            dists[a] = dists[b];
+            dists[b] = d;
+            double chord = chords[a];
+            chords[a] = chords[b];
+            chords[b] = chord;
+        }
+    }
+
+    /** Growable (id, distance) candidates. */
+    private static final class Found {
+        long[] ids = new long[32];
+        double[] dists = new double[32];
+        int size;
+
+        void add(long id, double d) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                dists = Arrays.copyOf(dists, size * 2);
+            }
+            ids[size] = id;
+            dists[size] = d;
+            size++;
+        }
+
+        int countWithin(double km) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (dists[i] <= km) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        List<Neighbor> smallest(int limit) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> dists[a] != dists[b]
+                    ? Double.compare(dists[a], dists[b])
+                    : Long.compare(ids[a], ids[b]));
+            int n = Math.min(limit, size);
+            List<Neighbor> out = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                out.add(new Neighbor(ids[order[i]], dists[order[i]]));
+            }
+            return out;
+        }
+    }
+}
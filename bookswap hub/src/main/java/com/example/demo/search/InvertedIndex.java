@@ -0,0 +1,268 @@
+package com.example.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over book title, author and description with BM25 ranking.
+ * <p>
+ * Every book gets a dense int ordinal; each term maps to a {@link PostingList}
+ * of ordinals. Field matches are weighted (title &gt; author &gt; description)
+ * by counting a title occurrence as several plain occurrences. Query terms are
+ * AND-ed, and each one also matches indexed terms it is a prefix of, so a
+ * half-typed word still finds results. Ordinals of removed books are handed
+ * to the next new book.
+ * <p>
+ * Not thread-safe; {@code BookIndexService} serializes writers against readers.
+ */
+public class InvertedIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float PREFIX_PENALTY = 0.7f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<Long, Integer> ordinalByBook = new HashMap<>();
+
+    private long[] bookIds = new long[256];
+    private String[][] docTerms = new String[256][];
+    private int[] docLengths = new int[256];
+    private final OrdinalPool ordinals = new OrdinalPool();
+    private int liveDocs;
+    private long totalLength;
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    /**
+     * Indexes a book, replacing any previous version of it.
+     */
+    public void put(long bookId, String title, String author, String description) {
+        Integer existing = ordinalByBook.get(bookId);
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            unlink(ordinal);
+        } else {
+            ordinal = ordinals.acquire();
+            ensureCapacity(ordinals.limit());
+            ordinalByBook.put(bookId, ordinal);
+            bookIds[ordinal] = bookId;
+            liveDocs++;
+        }
+
+        Map<String, Integer> freqs = new HashMap<>();
+        addField(freqs, title, TITLE_WEIGHT);
+        addField(freqs, author, AUTHOR_WEIGHT);
+        addField(freqs, description, DESCRIPTION_WEIGHT);
+
+        int length = 0;
+        for (Map.Entry<String, Integer> e : freqs.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new PostingList()).put(ordinal, e.getValue());
+            length += e.getValue();
+        }
+        docTerms[ordinal] = freqs.keySet().toArray(new String[0]);
+        docLengths[ordinal] = length;
+        totalLength += length;
+    }
+
+    public void remove(long bookId) {
+        Integer ordinal = ordinalByBook.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        unlink(ordinal);
+        docTerms[ordinal] = null;
+        ordinals.release(ordinal);
+        liveDocs--;
+    }
+
+    public void clear() {
+        postings.clear();
+        ordinalByBook.clear();
+        Arrays.fill(docTerms, 0, ordinals.limit(), null);
+        ordinals.clear();
+        liveDocs = 0;
+        totalLength = 0;
+    }
+
+    public int size() {
+        return liveDocs;
+    }
+
+    public boolean contains(long bookId) {
+        return ordinalByBook.containsKey(bookId);
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * @return ids of books matching every query term, best match first, at most {@code limit}
+     */
+    public long[] search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (terms.isEmpty() || liveDocs == 0) {
+            return new long[0];
+        }
+
+        ScoredDocs result = null;
+        for (String term : terms) {
+            ScoredDocs matches = match(term);
+            result = result == null ? matches : result.intersect(matches);
+            if (result.size == 0) {
+                return new long[0];
+            }
+        }
+        return result.topBookIds(limit, bookIds);
+    }
+
+    private ScoredDocs match(String term) {
+        List<PostingList> lists = new ArrayList<>();
+        List<Float> boosts = new ArrayList<>();
+
+        PostingList exact = postings.get(term);
+        if (exact != null) {
+            lists.add(exact);
+            boosts.add(1f);
+        }
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            int expansions = 0;
+            for (Map.Entry<String, PostingList> e : postings
+                    .subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+                if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                lists.add(e.getValue());
+                boosts.add(PREFIX_PENALTY);
+            }
+        }
+
+        int total = 0;
+        for (PostingList list : lists) {
+            total += list.size();
+        }
+        // Pack (ordinal, slot) so one primitive sort groups duplicates across expanded terms
+        long[] packed = new long[total];
+        float[] slotScores = new float[total];
+        float avgLength = (float) totalLength / liveDocs;
+        int slot = 0;
+        for (int l = 0; l < lists.size(); l++) {
+            PostingList list = lists.get(l);
+            float idf = (float) Math.log(1 + (liveDocs - list.size() + 0.5) / (list.size() + 0.5));
+            for (int i = 0; i < list.size(); i++) {
+                int doc = list.doc(i);
+                float tf = list.freq(i);
+                float norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLengths[doc] / avgLength));
+                slotScores[slot] = boosts.get(l) * idf * norm;
+                packed[slot] = ((long) doc << 32) | slot;
+                slot++;
+            }
+        }
+        Arrays.sort(packed);
+
+        ScoredDocs out = new ScoredDocs(total);
+        for (long p : packed) {
+            int doc = (int) (p >>> 32);
+            float score = slotScores[(int) p];
+            if (out.size > 0 && out.docs[out.size - 1] == doc) {
+                out.scores[out.size - 1] = Math.max(out.scores[out.size - 1], score);
+            } else {
+                out.docs[out.size] = doc;
+                out.scores[out.size] = score;
+                out.size++;
+            }
+        }
+        return out;
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private static void addField(Map<String, Integer> freqs, String text, int weight) {
+        for (String token : Tokenizer.tokenize(text)) {
+            freqs.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void unlink(int ordinal) {
+        String[] terms = docTerms[ordinal];
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(ordinal);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= docLengths[ordinal];
+        docLengths[ordinal] = 0;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(needed, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+        docLengths = Arrays.copyOf(docLengths, capacity);
+    }
+
+    /** Doc-ordered ordinals with their accumulated scores. */
+    private static final class ScoredDocs {
+        final int[] docs;
+        final float[] scores;
+        int size;
+
+        ScoredDocs(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        ScoredDocs intersect(ScoredDocs other) {
+            ScoredDocs out = new ScoredDocs(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (docs[i] > other.docs[j]) {
+                    j++;
+                } else {
+                    out.docs[out.size] = docs[i];
+                    out.scores[out.size] = scores[i] + other.scores[j];
+                    out.size++;
+                    i++;
+                    j++;
+                }
+            }
+            return out;
+        }
+
+        long[] topBookIds(int limit, long[] bookIds) {
+            // Scores are positive, so their raw float bits sort in score order
+            long[] ranked = new long[size];
+            for (int i = 0; i < size; i++) {
+                ranked[i] = ((long) Float.floatToIntBits(scores[i]) << 32) | docs[i];
+            }
+            Arrays.sort(ranked);
+            int n = Math.min(limit, size);
+            long[] out = new long[n];
+            for (int i = 0; i < n; i++) {
+                out[i] = bookIds[(int) ranked[size - 1 - i]];
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.search;
+
+import java.util.Arrays;
+
+/**
+ * Hands out dense int ordinals, reusing released ones before growing, so arrays
+ * and bitsets indexed by ordinal stay as large as the live set rather than every
+ * book ever indexed. Not thread-safe; callers guard access.
+ */
+final class OrdinalPool {
+
+    private int[] free = new int[16];
+    private int freeCount;
+    private int limit;
+
+    int acquire() {
+        return freeCount > 0 ? free[--freeCount] : limit++;
+    }
+
+    void release(int ordinal) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    /** One past the highest ordinal handed out since the last {@link #clear()}. */
+    int limit() {
+        return limit;
+    }
+
+    void clear() {
+        freeCount = 0;
+        limit = 0;
+    }
+}
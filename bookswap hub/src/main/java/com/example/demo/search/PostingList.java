@@ -0,0 +1,54 @@
+package com.example.demo.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable, doc-ordered list of (doc, term frequency) pairs backed by primitive arrays.
+ * Not thread-safe; callers guard access.
+ */
+final class PostingList {
+
+    private int[] docs = new int[4];
+    private int[] freqs = new int[4];
+    private int size;
+
+    void put(int doc, int freq) {
+        int pos = Arrays.binarySearch(docs, 0, size, doc);
+        if (pos >= 0) {
+            freqs[pos] = freq;
+            return;
+        }
+        pos = -pos - 1;
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            freqs = Arrays.copyOf(freqs, size * 2);
+        }
+        System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+        System.arraycopy(freqs, pos, freqs, pos + 1, size - pos);
+        docs[pos] = doc;
+        freqs[pos] = freq;
+        size++;
+    }
+
+    void remove(int doc) {
+        int pos = Arrays.binarySearch(docs, 0, size, doc);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+        System.arraycopy(freqs, pos + 1, freqs, pos, size - pos - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int i) {
+        return docs[i];
+    }
+
+    int freq(int i) {
+        return freqs[i];
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least-recently-used cache of listing pages stored as book id lists.
+ * <p>
+ * Entries are weighed by the number of ids they hold and evicted once the
+ * total passes {@code maxWeight}, so a few huge pages cannot crowd out the
+ * budget unnoticed. Every entry belongs to one catalog version: the first
+ * access with a newer version drops the whole cache, and results computed
+ * against an older version are never stored.
+ */
+public class SearchResultCache<K> {
+
+    /** One cached page: the ids in display order and the cursor for the page after it. */
+    public record CachedPage(long[] ids, String nextCursor) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, long invalidations,
+                        int entries, long weight, long maxWeight) {
+    }
+
+    private final long maxWeight;
+    private final LinkedHashMap<K, CachedPage> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long version;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public SearchResultCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return the page cached for {@code key} under {@code catalogVersion}, or {@code null}
+     */
+    public synchronized CachedPage get(K key, long catalogVersion) {
+        advanceTo(catalogVersion);
+        CachedPage page = catalogVersion == version ? entries.get(key) : null;
+        if (page == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return page;
+    }
+
+    public synchronized void put(K key, long catalogVersion, CachedPage page) {
+        advanceTo(catalogVersion);
+        long pageWeight = weigh(page);
+        if (catalogVersion != version || pageWeight > maxWeight) {
+            return;
+        }
+        CachedPage previous = entries.put(key, page);
+        if (previous != null) {
+            weight -= weigh(previous);
+        }
+        weight += pageWeight;
+
+        Iterator<CachedPage> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= weigh(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, invalidations, entries.size(), weight, maxWeight);
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private void advanceTo(long catalogVersion) {
+        if (catalogVersion > version) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            entries.clear();
+            weight = 0;
+            version = catalogVersion;
+        }
+    }
+
+    // The id array dominates; count one extra slot for the entry itself
+    private static long weigh(CachedPage page) {
+        return page.ids().length + 1L;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Prefix completion over book titles and authors.
+ * <p>
+ * Every distinct normalized title and author is one suggestion, counted by how
+ * many listed books carry it. A suggestion is reachable from the start of any of
+ * its words ("potter" finds "Harry Potter"), so it is stored in a sorted map
+ * once per word offset and a prefix lookup is a single range scan. The scan is
+ * capped so a short, common prefix still answers in bounded time.
+ * <p>
+ * Not thread-safe for writes; {@code BookIndexService} serializes writers
+ * against readers.
+ */
+public class SuggestIndex {
+
+    // Range entries inspected per lookup; past this the best of what was seen is returned
+    private static final int MAX_SCAN = 1024;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    /** One completion and the number of listed books it names. */
+    public record Suggestion(String text, String kind, int count) {
+    }
+
+    private final NavigableMap<String, Phrase> byWordStart = new TreeMap<>();
+    private final Map<String, Phrase> phrases = new HashMap<>();
+    private final Map<Long, String[]> phrasesByBook = new HashMap<>();
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    public void put(long bookId, String title, String author) {
+        remove(bookId);
+        String titleKey = add("title", title);
+        String authorKey = add("author", author);
+        phrasesByBook.put(bookId, new String[] { titleKey, authorKey });
+    }
+
+    public void remove(long bookId) {
+        String[] keys = phrasesByBook.remove(bookId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            if (key != null) {
+                release(key);
+            }
+        }
+    }
+
+    public void clear() {
+        byWordStart.clear();
+        phrases.clear();
+        phrasesByBook.clear();
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * @return up to {@code limit} suggestions with a word starting with {@code prefix},
+     *         most common first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = String.join(" ", Tokenizer.tokenize(prefix));
+        if (normalized.length() < MIN_PREFIX_LENGTH || limit <= 0) {
+            return List.of();
+        }
+        Comparator<Phrase> rank = Comparator.<Phrase>comparingInt(p -> p.count)
+                .thenComparing(p -> p.key, Comparator.reverseOrder());
+        PriorityQueue<Phrase> top = new PriorityQueue<>(limit + 1, rank);
+        Set<String> seen = new HashSet<>();
+        int scanned = 0;
+        for (Phrase phrase : byWordStart.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            if (++scanned > MAX_SCAN) {
+                break;
+            }
+            boolean full = top.size() == limit;
+            if ((full && rank.compare(phrase, top.peek()) <= 0) || !seen.add(phrase.key)) {
+                continue;
+            }
+            top.add(phrase);
+            if (full) {
+                top.poll();
+            }
+        }
+
+        List<Suggestion> out = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Phrase p = top.poll();
+            out.add(0, new Suggestion(p.text, p.kind, p.count));
+        }
+        return out;
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private String add(String kind, String text) {
+        List<String> words = Tokenizer.tokenize(text);
+        if (words.isEmpty()) {
+            return null;
+        }
+        String normalized = String.join(" ", words);
+        String key = kind + KEY_SEPARATOR + normalized;
+        Phrase phrase = phrases.get(key);
+        if (phrase == null) {
+            phrase = new Phrase(key, kind, text.strip());
+            phrases.put(key, phrase);
+            int offset = 0;
+            for (String word : words) {
+                byWordStart.put(wordStartKey(normalized.substring(offset), key), phrase);
+                offset += word.length() + 1;
+            }
+        }
+        phrase.count++;
+        return key;
+    }
+
+    private void release(String key) {
+        Phrase phrase = phrases.get(key);
+        if (phrase == null || --phrase.count > 0) {
+            return;
+        }
+        phrases.remove(key);
+        String normalized = key.substring(key.indexOf(KEY_SEPARATOR) + 1);
+        int offset = 0;
+        for (String word : normalized.split(" ")) {
+            byWordStart.remove(wordStartKey(normalized.substring(offset), key));
+            offset += word.length() + 1;
+        }
+    }
+
+    // The phrase key makes entries unique when two phrases share a suffix
+    private static String wordStartKey(String suffix, String phraseKey) {
+        return suffix + KEY_SEPARATOR + phraseKey;
+    }
+
+    /** A distinct title or author; {@code text} is the first spelling seen. */
+    private static final class Phrase {
+        final String key;
+        final String kind;
+        final String text;
+        int count;
+
+        Phrase(String key, String kind, String text) {
+            this.key = key;
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.demo.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typo-tolerant index over book titles and authors. Each word is padded
+ * ({@code "  word "}, as pg_trgm does) and cut into overlapping three-character
+ * grams; a book matches a query when enough of the query's grams occur in it.
+ * <p>
+ * Lookups only walk the posting lists of the query's own grams, counting hits
+ * per book in a per-thread scratch array, so cost grows with the number of
+ * matching books rather than the catalog size.
+ * <p>
+ * Not thread-safe for writes; {@code BookIndexService} serializes writers
+ * against readers. Concurrent readers are fine.
+ */
+public class TrigramIndex {
+
+    // Share of the query's grams a book must contain to count as a match
+    private static final float MIN_SIMILARITY = 0.45f;
+    private static final int MIN_QUERY_LENGTH = 3;
+
+    private final Map<Long, DocList> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinalByBook = new HashMap<>();
+
+    private long[] bookIds = new long[256];
+    private long[][] docGrams = new long[256][];
+    private int maxOrdinal;
+    private int liveDocs;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    public void put(long bookId, String title, String author) {
+        Integer existing = ordinalByBook.get(bookId);
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            unlink(ordinal);
+        } else {
+            ordinal = maxOrdinal++;
+            ensureCapacity(maxOrdinal);
+            ordinalByBook.put(bookId, ordinal);
+            bookIds[ordinal] = bookId;
+            liveDocs++;
+        }
+        long[] grams = grams(title + " " + author);
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, g -> new DocList()).add(ordinal);
+        }
+        docGrams[ordinal] = grams;
+    }
+
+    public void remove(long bookId) {
+        Integer ordinal = ordinalByBook.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        unlink(ordinal);
+        liveDocs--;
+    }
+
+    public void clear() {
+        postings.clear();
+        ordinalByBook.clear();
+        Arrays.fill(docGrams, 0, maxOrdinal, null);
+        maxOrdinal = 0;
+        liveDocs = 0;
+    }
+
+    public int size() {
+        return liveDocs;
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * @return ids of books whose title or author resemble {@code query}, most similar first
+     */
+    public long[] search(String query, int limit) {
+        String normalized = Tokenizer.normalize(query).strip();
+        if (normalized.length() < MIN_QUERY_LENGTH || liveDocs == 0) {
+            return new long[0];
+        }
+        long[] queryGrams = grams(normalized);
+        int needed = (int) Math.ceil(queryGrams.length * MIN_SIMILARITY);
+
+        Scratch s = scratch.get();
+        s.ensure(maxOrdinal);
+        int touchedCount = 0;
+        for (long gram : queryGrams) {
+            DocList list = postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int doc = list.docs[i];
+                if (s.counts[doc]++ == 0) {
+                    s.touched = s.push(s.touched, touchedCount++, doc);
+                }
+            }
+        }
+
+        long[] ranked = new long[touchedCount];
+        int hits = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = s.touched[i];
+            int shared = s.counts[doc];
+            s.counts[doc] = 0;
+            if (shared < needed) {
+                continue;
+            }
+            // Coverage of the query dominates; Jaccard breaks ties in favour of shorter text
+            float coverage = (float) shared / queryGrams.length;
+            float jaccard = (float) shared / (queryGrams.length + docGrams[doc].length - shared);
+            float score = 0.8f * coverage + 0.2f * jaccard;
+            ranked[hits++] = ((long) Float.floatToIntBits(score) << 32) | doc;
+        }
+        Arrays.sort(ranked, 0, hits);
+
+        int n = Math.min(limit, hits);
+        long[] out = new long[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = bookIds[(int) ranked[hits - 1 - i]];
+        }
+        return out;
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    static long[] grams(String text) {
+        long[] out = new long[16];
+        int n = 0;
+        for (String word : Tokenizer.tokenize(text)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                long gram = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, n * 2);
+                }
+                out[n++] = gram;
+            }
+        }
+        Arrays.sort(out, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || out[unique - 1] != out[i]) {
+                out[unique++] = out[i];
+            }
+        }
+        return Arrays.copyOf(out, unique);
+    }
+
+    private void unlink(int ordinal) {
+        long[] grams = docGrams[ordinal];
+        if (grams == null) {
+            return;
+        }
+        for (long gram : grams) {
+            DocList list = postings.get(gram);
+            if (list != null) {
+                list.remove(ordinal);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        docGrams[ordinal] = null;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(needed, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        docGrams = Arrays.copyOf(docGrams, capacity);
+    }
+
+    /** Sorted ordinals containing one gram. */
+    private static final class DocList {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            int pos = Arrays.binarySearch(docs, 0, size, doc);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+            docs[pos] = doc;
+            size++;
+        }
+
+        void remove(int doc) {
+            int pos = Arrays.binarySearch(docs, 0, size, doc);
+            if (pos >= 0) {
+                System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /** Per-thread hit counters, left zeroed after every query. */
+    private static final class Scratch {
+        int[] counts = new int[0];
+        int[] touched = new int[64];
+
+        void ensure(int ordinals) {
+            if (counts.length < ordinals) {
+                counts = new int[Math.max(ordinals, counts.length * 2)];
+            }
+        }
+
+        int[] push(int[] array, int index, int value) {
+            if (index == array.length) {
+                array = Arrays.copyOf(array, index * 2);
+            }
+            array[index] = value;
+            return array;
+        }
+    }
+}
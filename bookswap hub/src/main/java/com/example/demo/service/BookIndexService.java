@@ -0,0 +1,533 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import com.example.demo.dto.BookFacets;
+import com.example.demo.dto.BookSearchCriteria;
+import com.example.demo.model.Book;
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+import com.example.demo.repository.BookRepository;
+import com.example.demo.search.BitmapFilterIndex;
+import com.example.demo.search.BookDocument;
+import com.example.demo.search.CatalogSnapshot;
+import com.example.demo.search.ClusterIndex;
+import com.example.demo.search.GeoGridIndex;
+import com.example.demo.search.InvertedIndex;
+import com.example.demo.search.SuggestIndex;
+import com.example.demo.search.TrigramIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Owns the in-memory search structures over unsold books. It is loaded once the
+ * application is ready and kept current by the services that write books: each
+ * write reports the saved or removed book, and the change is applied after the
+ * surrounding transaction commits so a rollback never leaks into search results.
+ * Until the first load finishes {@link #isReady()} is false and callers fall back
+ * to the database.
+ * <p>
+ * When a snapshot file is configured the indexed books are written to it
+ * periodically and on shutdown, and the startup load reads the snapshot and
+ * replays only the rows changed since it from the database; see
+ * {@link CatalogSnapshot}.
+ * <p>
+ * Every applied change also bumps the {@linkplain #catalogVersion() catalog version},
+ * which callers use to tag anything they derive from the catalog.
+ */
+@Service
+public class BookIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookIndexService.class);
+    // ~22 km tall cells: a city-sized neighbourhood is a handful of cells
+    private static final double GRID_CELL_DEGREES = 0.2;
+    // Finest map-cluster cells are 360 / 2^15 ≈ 0.011° (~1.2 km) on a side
+    private static final int CLUSTER_MAX_LEVEL = 15;
+    private static final int CLUSTER_MAX_CELLS_IN_VIEW = 4096;
+    // A row stamped before a snapshot but committed after it is still replayed if its transaction took less
+    private static final Duration SNAPSHOT_MARGIN = Duration.ofMinutes(5);
+
+    private final BookRepository bookRepository;
+    private final InvertedIndex textIndex = new InvertedIndex();
+    private final TrigramIndex fuzzyIndex = new TrigramIndex();
+    private final GeoGridIndex geoIndex = new GeoGridIndex(GRID_CELL_DEGREES);
+    private final ClusterIndex clusterIndex = new ClusterIndex(CLUSTER_MAX_LEVEL, CLUSTER_MAX_CELLS_IN_VIEW);
+    private final BitmapFilterIndex filterIndex = new BitmapFilterIndex();
+    private final SuggestIndex suggestIndex = new SuggestIndex();
+    private final Map<Long, CatalogSnapshot.Entry> entries = new HashMap<>();
+    private final NavigableSet<Long> unlocated = new TreeSet<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Catalog version at each book's last change since startup; absent means unchanged
+    private final Map<Long, Long> bookVersions = new ConcurrentHashMap<>();
+
+    private final Path snapshotFile;
+    // Catalog version last written to the snapshot; guarded by this
+    private long snapshotVersion = -1;
+
+    private volatile boolean ready;
+
+    public BookIndexService(BookRepository bookRepository,
+            @Value("${app.search.snapshot.file:}") String snapshotFile) {
+        this.bookRepository = bookRepository;
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+
+    // ─── Startup load ─────────────────────────────────────────────────────────
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        bookRepository.stampMissingUpdatedAt(LocalDateTime.now());
+        CatalogSnapshot.Contents snapshot = readSnapshot();
+        int loaded;
+        String source;
+        lock.writeLock().lock();
+        try {
+            // Reading under the write lock makes concurrent writes queue behind the load
+            textIndex.clear();
+            fuzzyIndex.clear();
+            geoIndex.clear();
+            clusterIndex.clear();
+            filterIndex.clear();
+            suggestIndex.clear();
+            entries.clear();
+            unlocated.clear();
+            if (snapshot != null) {
+                source = "snapshot, " + restore(snapshot) + " rows replayed";
+            } else {
+                for (Book book : bookRepository.findBySoldFalseOrderByCreatedAtDesc()) {
+                    put(CatalogSnapshot.Entry.of(book));
+                }
+                source = "database";
+            }
+            loaded = textIndex.size();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        catalogVersion.incrementAndGet();
+        logger.info("Search index loaded {} books from {} in {} ms", loaded, source,
+                System.currentTimeMillis() - start);
+    }
+
+    // Snapshot entries, then every row changed after it; callers hold the write lock
+    private int restore(CatalogSnapshot.Contents snapshot) {
+        for (CatalogSnapshot.Entry entry : snapshot.entries()) {
+            put(entry);
+        }
+        List<Book> changed = bookRepository.findChangedSince(snapshot.completeUntil());
+        for (Book book : changed) {
+            if (book.isSold()) {
+                unindex(book.getId());
+            } else {
+                put(CatalogSnapshot.Entry.of(book));
+            }
+        }
+
+        // Deletes leave no row to replay, and rows can predate the snapshot without being in it
+        Set<Long> unsold = new HashSet<>(bookRepository.findUnsoldIds());
+        List<Long> deleted = entries.keySet().stream().filter(id -> !unsold.contains(id)).toList();
+        deleted.forEach(this::unindex);
+        unsold.removeAll(entries.keySet());
+        List<Book> missing = unsold.isEmpty() ? List.of() : bookRepository.findBySoldFalseAndIdIn(unsold);
+        for (Book book : missing) {
+            put(CatalogSnapshot.Entry.of(book));
+        }
+        return changed.size() + deleted.size() + missing.size();
+    }
+
+    private CatalogSnapshot.Contents readSnapshot() {
+        if (snapshotFile == null) {
+            return null;
+        }
+        try {
+            CatalogSnapshot.Contents contents = CatalogSnapshot.read(snapshotFile);
+            if (contents == null && snapshotFile.toFile().exists()) {
+                logger.warn("Ignoring unreadable search snapshot {}", snapshotFile);
+            }
+            return contents;
+        } catch (IOException e) {
+            logger.warn("Could not read search snapshot {}: {}", snapshotFile, e.toString());
+            return null;
+        }
+    }
+
+    // ─── Snapshot ─────────────────────────────────────────────────────────────
+    /**
+     * Writes the indexed books to the snapshot file if the catalog changed since the
+     * last write. Runs periodically and on shutdown; a no-op without a snapshot file.
+     */
+    @Scheduled(initialDelayString = "${app.search.snapshot.interval:PT10M}",
+            fixedDelayString = "${app.search.snapshot.interval:PT10M}")
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        if (snapshotFile == null || !ready) {
+            return;
+        }
+        // Taken before the copy: anything stamped later is replayed from the database
+        LocalDateTime completeUntil = LocalDateTime.now().minus(SNAPSHOT_MARGIN);
+        long version;
+        List<CatalogSnapshot.Entry> copy;
+        lock.readLock().lock();
+        try {
+            version = catalogVersion.get();
+            if (version == snapshotVersion) {
+                return;
+            }
+            copy = new ArrayList<>(entries.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long start = System.currentTimeMillis();
+        try {
+            CatalogSnapshot.write(snapshotFile, completeUntil, copy);
+            snapshotVersion = version;
+            logger.info("Search snapshot of {} books written in {} ms", copy.size(),
+                    System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.warn("Could not write search snapshot {}: {}", snapshotFile, e.toString());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Increases after every committed change to the listed books. It moves only once
+     * the change is visible both in the database and in the indexes, so a result read
+     * under one version is never older than that version.
+     */
+    public long catalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * The catalog version at which this book was last saved or removed, or 0 if it
+     * has not changed since startup. Moves under the same rule as the catalog version.
+     */
+    public long bookVersion(long id) {
+        return bookVersions.getOrDefault(id, 0L);
+    }
+
+    // ─── Write notifications ──────────────────────────────────────────────────
+    /**
+     * Re-indexes a created or edited book, or drops it once it is sold.
+     */
+    public void bookSaved(Book book) {
+        long id = book.getId();
+        if (book.isSold()) {
+            AfterCommit.run(() -> remove(id));
+            return;
+        }
+        CatalogSnapshot.Entry entry = CatalogSnapshot.Entry.of(book);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                put(entry);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            bookVersions.put(id, catalogVersion.incrementAndGet());
+        });
+    }
+
+    public void bookRemoved(long id) {
+        AfterCommit.run(() -> remove(id));
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    /**
+     * Titles and authors of listed books with a word starting with {@code prefix},
+     * most common first.
+     */
+    public List<SuggestIndex.Suggestion> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return suggestIndex.suggest(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of books matching every filter of the criteria (text included), in the given
+     * listing order, starting strictly after ({@code afterKey}, {@code afterId}) or from
+     * the top when {@code afterKey} is {@code null}.
+     */
+    public long[] filterPage(BookSearchCriteria criteria, BitmapFilterIndex.Order order,
+                             Comparable<?> afterKey, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            return filterIndex.page(matching(criteria), order, afterKey, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int count(BookSearchCriteria criteria) {
+        lock.readLock().lock();
+        try {
+            return matching(criteria).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Text matches for the criteria, best first, restricted to books passing its other filters.
+     */
+    public long[] searchRanked(BookSearchCriteria criteria, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] ranked = matchText(criteria.q(), Integer.MAX_VALUE);
+            BitSet filter = filterIndex.filter(criteria.category(), criteria.condition(),
+                    criteria.minPrice(), criteria.maxPrice());
+            long[] out = new long[Math.min(limit, ranked.length)];
+            int n = 0;
+            for (int i = 0; i < ranked.length && n < out.length; i++) {
+                if (filterIndex.accepts(filter, ranked[i])) {
+                    out[n++] = ranked[i];
+                }
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Books matching the criteria, nearest to its origin first, starting strictly after
+     * ({@code afterKm}, {@code afterId}); {@code afterKm < 0} starts from the nearest.
+     * Distances come from {@link BookService#calculateDistance}. Books without a
+     * location follow all located ones with an infinite distance, in id order.
+     */
+    public List<GeoGridIndex.Neighbor> nearest(BookSearchCriteria criteria, double afterKm, long afterId,
+                                               int limit) {
+        lock.readLock().lock();
+        try {
+            LongPredicate accept = acceptor(criteria);
+            List<GeoGridIndex.Neighbor> out = new ArrayList<>(limit);
+            long afterUnlocated = afterId;
+            if (afterKm != Double.POSITIVE_INFINITY) {
+                out.addAll(geoIndex.nearest(criteria.latitude(), criteria.longitude(), afterKm, afterId,
+                        limit, accept, BookService::calculateDistance));
+                afterUnlocated = Long.MIN_VALUE;
+            }
+            for (Long id : unlocated.tailSet(afterUnlocated, false)) {
+                if (out.size() >= limit) {
+                    break;
+                }
+                if (accept.test(id)) {
+                    out.add(new GeoGridIndex.Neighbor(id, Double.POSITIVE_INFINITY));
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Books matching the criteria within {@code radiusKm} of (lat, lng), nearest first,
+     * starting strictly after ({@code afterKm}, {@code afterId}); {@code afterKm < 0}
+     * starts from the nearest. Books without a location are never within a radius.
+     */
+    public GeoGridIndex.Within within(BookSearchCriteria criteria, double lat, double lng, double radiusKm,
+                                      double afterKm, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            LongPredicate accept = criteria.hasText() || criteria.hasNonTextFilters() ? acceptor(criteria) : null;
+            return geoIndex.within(lat, lng, radiusKm, afterKm, afterId, limit, accept,
+                    BookService::calculateDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Map clusters of the located books in the viewport at the given cluster level; see
+     * {@link ClusterIndex#view}.
+     */
+    public ClusterIndex.View clusters(double south, double west, double north, double east, int level) {
+        lock.readLock().lock();
+        try {
+            return clusterIndex.view(south, west, north, east, level);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A cluster index sized like the live one, for callers aggregating books themselves
+     * before the first load.
+     */
+    public static ClusterIndex newClusterIndex() {
+        return new ClusterIndex(CLUSTER_MAX_LEVEL, CLUSTER_MAX_CELLS_IN_VIEW);
+    }
+
+    /**
+     * Category, condition and price-bucket counts for the criteria, gathered in one pass
+     * over the matching books. Each facet skips its own filter so the counts show what
+     * picking another value would return.
+     */
+    public BookFacets facets(BookSearchCriteria criteria) {
+        int[] categories = new int[BookCategory.values().length];
+        int[] conditions = new int[BookCondition.values().length];
+        int[] buckets = new int[BookFacets.priceBucketCount()];
+        int total = 0;
+
+        lock.readLock().lock();
+        try {
+            Collection<CatalogSnapshot.Entry> candidates;
+            if (criteria.hasText()) {
+                long[] hits = matchText(criteria.q(), Integer.MAX_VALUE);
+                candidates = new ArrayList<>(hits.length);
+                for (long id : hits) {
+                    CatalogSnapshot.Entry entry = entries.get(id);
+                    if (entry != null) {
+                        candidates.add(entry);
+                    }
+                }
+            } else {
+                candidates = entries.values();
+            }
+
+            for (CatalogSnapshot.Entry entry : candidates) {
+                BookDocument doc = entry.document();
+                boolean category = criteria.category() == null || criteria.category() == doc.category();
+                boolean condition = criteria.condition() == null || criteria.condition() == doc.condition();
+                boolean price = inRange(doc.price(), criteria.minPrice(), criteria.maxPrice());
+                if (condition && price) {
+                    categories[doc.category().ordinal()]++;
+                }
+                if (category && price) {
+                    conditions[doc.condition().ordinal()]++;
+                }
+                if (category && condition) {
+                    for (int b = 0; b < buckets.length; b++) {
+                        if (inRange(doc.price(), BookFacets.bucketMin(b), BookFacets.bucketMax(b))) {
+                            buckets[b]++;
+                        }
+                    }
+                }
+                if (category && condition && price) {
+                    total++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<BookCategory, Integer> byCategory = new EnumMap<>(BookCategory.class);
+        for (BookCategory c : BookCategory.values()) {
+            byCategory.put(c, categories[c.ordinal()]);
+        }
+        Map<BookCondition, Integer> byCondition = new EnumMap<>(BookCondition.class);
+        for (BookCondition c : BookCondition.values()) {
+            byCondition.put(c, conditions[c.ordinal()]);
+        }
+        List<BookFacets.PriceBucket> priceBuckets = new ArrayList<>(buckets.length);
+        for (int b = 0; b < buckets.length; b++) {
+            priceBuckets.add(new BookFacets.PriceBucket(BookFacets.bucketMin(b), BookFacets.bucketMax(b), buckets[b]));
+        }
+        return new BookFacets(total, byCategory, byCondition, priceBuckets);
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private void put(CatalogSnapshot.Entry entry) {
+        BookDocument document = entry.document();
+        long id = document.id();
+        textIndex.put(id, entry.title(), entry.author(), entry.description());
+        fuzzyIndex.put(id, entry.title(), entry.author());
+        suggestIndex.put(id, entry.title(), entry.author());
+        entries.put(id, entry);
+        filterIndex.put(document);
+        if (document.hasLocation()) {
+            geoIndex.put(id, document.latitude(), document.longitude());
+            clusterIndex.put(id, document.latitude(), document.longitude(), document.category());
+            unlocated.remove(id);
+        } else {
+            geoIndex.remove(id);
+            clusterIndex.remove(id);
+            unlocated.add(id);
+        }
+    }
+
+    /**
+     * Ids of books matching every word of {@code query}, best match first; when nothing
+     * matches exactly, titles and authors that resemble it (typos). Callers hold the lock.
+     */
+    private long[] matchText(String query, int limit) {
+        long[] exact = textIndex.search(query, limit);
+        return exact.length > 0 ? exact : fuzzyIndex.search(query, limit);
+    }
+
+    private static boolean inRange(BigDecimal price, BigDecimal min, BigDecimal max) {
+        return (min == null || price.compareTo(min) >= 0) && (max == null || price.compareTo(max) <= 0);
+    }
+
+    // Ordinals of books passing every filter of the criteria, text included
+    private BitSet matching(BookSearchCriteria criteria) {
+        BitSet filter = filterIndex.filter(criteria.category(), criteria.condition(),
+                criteria.minPrice(), criteria.maxPrice());
+        if (criteria.hasText()) {
+            filter.and(filterIndex.ordinalsOf(matchText(criteria.q(), Integer.MAX_VALUE)));
+        }
+        return filter;
+    }
+
+    private LongPredicate acceptor(BookSearchCriteria criteria) {
+        BitSet filter = matching(criteria);
+        return id -> filterIndex.accepts(filter, id);
+    }
+
+    private void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bookVersions.put(id, catalogVersion.incrementAndGet());
+    }
+
+    private void unindex(long id) {
+        textIndex.remove(id);
+        fuzzyIndex.remove(id);
+        geoIndex.remove(id);
+        clusterIndex.remove(id);
+        filterIndex.remove(id);
+        suggestIndex.remove(id);
+        entries.remove(id);
+        unlocated.remove(id);
+    }
+}
@@ -1,24 +1,105 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.BookCard;
+import com.example.demo.dto.BookCursor;
+import com.example.demo.dto.BookDetail;
+import com.example.demo.dto.BookFacets;
+import com.example.demo.dto.BookPage;
+import com.example.demo.dto.BookSearchCriteria;
+import com.example.demo.dto.CoverImage;
+import com.example.demo.dto.NearbyBook;
+import com.example.demo.dto.NearbyPage;
 import com.example.demo.model.*;
+import com.example.demo.repository.BookImageRepository;
+import com.example.demo.repository.BookListingQueries;
 import com.example.demo.repository.BookRepository;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.jpa.domain.Specification;
+import com.example.demo.repository.PurchaseRequestRepository;
+import com.example.demo.search.BitmapFilterIndex;
+import com.example.demo.search.ClusterIndex;
+import com.example.demo.search.GeoGridIndex;
+import com.example.demo.search.SearchResultCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class BookService {
 
+    private static final String DEFAULT_IMAGE_TYPE = "image/jpeg";
+    // Upper bound on text matches handed to the database as an id list
+    private static final int MAX_TEXT_HITS = 5000;
+    // book_images is written and read over JDBC so cover bytes stream rather than sit in an entity
+    private static final String SELECT_IMAGE_SQL = "SELECT content_type, data FROM book_images WHERE book_id = ?";
+    private static final String UPDATE_IMAGE_SQL = "UPDATE book_images SET data = ?, content_type = ? WHERE book_id = ?";
+    private static final String INSERT_IMAGE_SQL = "INSERT INTO book_images (data, content_type, book_id) VALUES (?, ?, ?)";
+
     private final BookRepository bookRepository;
+    private final BookListingQueries listingQueries;
+    private final BookImageRepository bookImageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PurchaseRequestRepository purchaseRequestRepository;
+    private final BookIndexService bookIndexService;
+    private final ImageStore imageStore;
+    private final ThumbnailService thumbnailService;
+    private final ImageCache imageCache;
+    private final ChatAccessService chatAccessService;
+    private final RecentChatMessages recentChatMessages;
+    private final SearchResultCache<PageKey> resultCache;
+    // Concurrent identical reads share one in-flight load
+    private final SingleFlight<Long, Optional<BookDetail>> bookLoads;
+    private final SingleFlight<Long, Optional<CoverImage>> coverLoads;
+    private final SingleFlight<PageLoad, BookPage> pageLoads;
 
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, BookListingQueries listingQueries,
+            BookImageRepository bookImageRepository, JdbcTemplate jdbcTemplate,
+            PurchaseRequestRepository purchaseRequestRepository,
+            BookIndexService bookIndexService, ImageStore imageStore, ThumbnailService thumbnailService,
+            ImageCache imageCache, ChatAccessService chatAccessService,
+            RecentChatMessages recentChatMessages,
+            @Value("${app.search.cache.max-ids:200000}") long resultCacheMaxIds,
+            @Value("${app.coalesce.timeout:5s}") Duration coalesceTimeout) {
         this.bookRepository = bookRepository;
+        this.listingQueries = listingQueries;
+        this.bookImageRepository = bookImageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.purchaseRequestRepository = purchaseRequestRepository;
+        this.bookIndexService = bookIndexService;
+        this.imageStore = imageStore;
+        this.thumbnailService = thumbnailService;
+        this.imageCache = imageCache;
+        this.chatAccessService = chatAccessService;
+        this.recentChatMessages = recentChatMessages;
+        this.resultCache = new SearchResultCache<>(resultCacheMaxIds);
+        this.bookLoads = new SingleFlight<>(coalesceTimeout);
+        this.coverLoads = new SingleFlight<>(coalesceTimeout);
+        this.pageLoads = new SingleFlight<>(coalesceTimeout);
+    }
+
+    // One listing page as requested; criteria are already normalized
+    private record PageKey(BookSearchCriteria criteria, String cursor, int pageSize) {
+    }
+
+    // Loads only coalesce against the same catalog version
+    private record PageLoad(PageKey key, long catalogVersion) {
     }
 
     // ─── List all unsold books ─────────────────────────────────────────────────
@@ -31,44 +112,267 @@ public class BookService {
         return bookRepository.findBySoldFalseAndOwnerNotOrderByCreatedAtDesc(currentUser);
     }
 
-    // ─── Search / filter books ─────────────────────────────────────────────────
-    public List<Book> searchBooks(String q, BookCategory category, BookCondition condition,
-                                  BigDecimal minPrice, BigDecimal maxPrice, String sort) {
-        Specification<Book> spec = (root, query, cb) -> cb.isFalse(root.get("sold"));
+    // ─── Search / filter books (keyset-paginated, cached as id lists) ─────────
+    public BookPage searchBooks(BookSearchCriteria criteria, String cursorToken, int pageSize) {
+        // Read the version first: a write committing mid-query then makes this result stale on arrival
+        long version = bookIndexService.catalogVersion();
+        PageKey key = new PageKey(criteria, cursorToken, pageSize);
+        SearchResultCache.CachedPage cached = resultCache.get(key, version);
+        if (cached != null) {
+            return new BookPage(loadInOrder(cached.ids()), cached.nextCursor());
+        }
+
+        BookPage page = pageLoads.load(new PageLoad(key, version),
+                () -> findPage(criteria, BookCursor.decode(cursorToken), pageSize));
+        long[] ids = new long[page.books().size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = page.books().get(i).id();
+        }
+        resultCache.put(key, version, new SearchResultCache.CachedPage(ids, page.nextCursor()));
+        return page;
+    }
+
+    public SearchResultCache.Stats searchCacheStats() {
+        return resultCache.stats();
+    }
+
+    public Map<String, SingleFlight.Stats> coalescingStats() {
+        Map<String, SingleFlight.Stats> stats = new LinkedHashMap<>();
+        stats.put("book", bookLoads.stats());
+        stats.put("cover", coverLoads.stats());
+        stats.put("search", pageLoads.stats());
+        return stats;
+    }
+
+    /**
+     * Once the index has loaded every filter and order is resolved in memory and only
+     * the page's rows are read; before that the listing is queried directly.
+     */
+    private BookPage findPage(BookSearchCriteria criteria, BookCursor cursor, int pageSize) {
+        if (bookIndexService.isReady()) {
+            return switch (criteria.sort()) {
+                case "relevance" -> relevancePage(bookIndexService.searchRanked(criteria, MAX_TEXT_HITS),
+                        cursor, pageSize);
+                case "distance" -> criteria.hasOrigin()
+                        ? distancePage(criteria, cursor, pageSize)
+                        : indexedPage(criteria, cursor, pageSize);
+                default -> indexedPage(criteria, cursor, pageSize);
+            };
+        }
+
+        // Fetch one extra row to learn whether another page follows
+        String sort = criteria.sort();
+        Comparable<?> afterKey = cursorKey(sort, cursor);
+        List<BookCard> rows = listingQueries.page(criteria, orderFor(sort), afterKey,
+                afterKey == null ? 0 : cursor.id(), pageSize + 1);
+        return toPage(sort, rows, pageSize);
+    }
+
+    private BookPage indexedPage(BookSearchCriteria criteria, BookCursor cursor, int pageSize) {
+        String sort = criteria.sort();
+        Comparable<?> afterKey = cursorKey(sort, cursor);
+        long afterId = afterKey == null ? 0 : cursor.id();
+        long[] ids = bookIndexService.filterPage(criteria, orderFor(sort), afterKey, afterId, pageSize + 1);
+        return toPage(sort, loadInOrder(ids), pageSize);
+    }
+
+    private static BookPage toPage(String sort, List<BookCard> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new BookPage(rows, null);
+        }
+        List<BookCard> page = rows.subList(0, pageSize);
+        return new BookPage(page, cursorAfter(sort, page.get(pageSize - 1)).encode());
+    }
+
+    // ─── Count matching books (no sorting, no entity hydration) ───────────────
+    public long countBooks(BookSearchCriteria criteria) {
+        if (bookIndexService.isReady()) {
+            return bookIndexService.count(criteria);
+        }
+        return listingQueries.count(criteria);
+    }
+
+    // ─── Facet counts (in memory, empty until the index has loaded) ───────────
+    public Optional<BookFacets> facetCounts(BookSearchCriteria criteria) {
+        return bookIndexService.isReady() ? Optional.of(bookIndexService.facets(criteria)) : Optional.empty();
+    }
+
+    /**
+     * Relevance order exists only in the index, so the page is cut from the ranked
+     * (already filtered) id list and the cursor holds the rank position of the last
+     * book shown.
+     */
+    private BookPage relevancePage(long[] ranked, BookCursor cursor, int pageSize) {
+        int from = 0;
+        if (cursor != null) {
+            try {
+                from = Math.min(Integer.parseInt(cursor.sortKey()) + 1, ranked.length);
+            } catch (NumberFormatException e) {
+                from = 0;
+            }
+        }
+        int to = Math.min(from + pageSize, ranked.length);
+        List<BookCard> page = loadInOrder(Arrays.copyOfRange(ranked, from, to));
+        String next = to < ranked.length ? BookCursor.of(to - 1, ranked[to - 1]).encode() : null;
+        return new BookPage(page, next);
+    }
 
-        if (q != null && !q.isBlank()) {
-            String pattern = "%" + q.trim().toLowerCase() + "%";
-            spec = spec.and((root, query, cb) -> cb.or(
-                    cb.like(cb.lower(root.get("title")), pattern),
-                    cb.like(cb.lower(root.get("author")), pattern)));
+    /**
+     * Nearest-first order comes from the grid index, which applies every filter itself;
+     * the cursor holds the exact distance and id of the last book shown.
+     */
+    private BookPage distancePage(BookSearchCriteria criteria, BookCursor cursor, int pageSize) {
+        GeoGridIndex.Neighbor after = distanceAfter(cursor);
+        List<GeoGridIndex.Neighbor> hits = bookIndexService.nearest(criteria, after.distanceKm(), after.bookId(),
+                pageSize + 1);
+        List<GeoGridIndex.Neighbor> shown = hits.subList(0, Math.min(pageSize, hits.size()));
+
+        long[] ids = new long[shown.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = shown.get(i).bookId();
         }
-        if (category != null) {
-            spec = spec.and((root, query, cb) -> cb.equal(root.get("category"), category));
+        GeoGridIndex.Neighbor last = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+        String next = hits.size() > pageSize ? BookCursor.of(last.distanceKm(), last.bookId()).encode() : null;
+        return new BookPage(loadInOrder(ids), next);
+    }
+
+    // The (distance, id) position a distance cursor holds; (-1, MIN) starts from the nearest
+    private static GeoGridIndex.Neighbor distanceAfter(BookCursor cursor) {
+        if (cursor != null) {
+            try {
+                return new GeoGridIndex.Neighbor(cursor.id(), Double.parseDouble(cursor.sortKey()));
+            } catch (NumberFormatException e) {
+                // unparseable cursor: restart from the nearest
+            }
         }
-        if (condition != null) {
-            spec = spec.and((root, query, cb) -> cb.equal(root.get("condition"), condition));
+        return new GeoGridIndex.Neighbor(Long.MIN_VALUE, -1);
+    }
+
+    // ─── Books within a radius (nearest first) ────────────────────────────────
+    /**
+     * Unsold books matching the criteria within {@code radiusKm} of (lat, lng), nearest
+     * first; the cursor holds the exact distance and id of the last book shown. Before the
+     * index has loaded, the database is queried over the circle's bounding box instead.
+     */
+    public NearbyPage booksNear(BookSearchCriteria criteria, double lat, double lng, double radiusKm,
+                                String cursorToken, int pageSize) {
+        GeoGridIndex.Neighbor after = distanceAfter(BookCursor.decode(cursorToken));
+        GeoGridIndex.Within within = bookIndexService.isReady()
+                ? bookIndexService.within(criteria, lat, lng, radiusKm, after.distanceKm(), after.bookId(),
+                        pageSize + 1)
+                : withinFromDatabase(criteria, lat, lng, radiusKm, after, pageSize + 1);
+        List<GeoGridIndex.Neighbor> hits = within.page();
+        List<GeoGridIndex.Neighbor> shown = hits.subList(0, Math.min(pageSize, hits.size()));
+
+        long[] ids = new long[shown.size()];
+        Map<Long, Double> distances = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = shown.get(i).bookId();
+            distances.put(ids[i], shown.get(i).distanceKm());
         }
-        if (minPrice != null) {
-            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), minPrice));
+        List<NearbyBook> books = new ArrayList<>(ids.length);
+        for (BookCard card : loadInOrder(ids)) {
+            books.add(new NearbyBook(card, distances.get(card.id())));
         }
-        if (maxPrice != null) {
-            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), maxPrice));
+        GeoGridIndex.Neighbor last = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+        String next = hits.size() > pageSize ? BookCursor.of(last.distanceKm(), last.bookId()).encode() : null;
+        return new NearbyPage(books, within.total(), next);
+    }
+
+    private GeoGridIndex.Within withinFromDatabase(BookSearchCriteria criteria, double lat, double lng,
+            double radiusKm, GeoGridIndex.Neighbor after, int limit) {
+        GeoGridIndex.Box box = GeoGridIndex.Box.around(lat, lng, radiusKm);
+        List<GeoGridIndex.Neighbor> inRadius = new ArrayList<>();
+        for (BookCard card : bookRepository.findCardsInBox(box.minLat(), box.maxLat(), box.minLng(), box.maxLng())) {
+            double d = calculateDistance(lat, lng, card.latitude(), card.longitude());
+            if (d <= radiusKm && matches(criteria, card)) {
+                inRadius.add(new GeoGridIndex.Neighbor(card.id(), d));
+            }
         }
+        List<GeoGridIndex.Neighbor> page = inRadius.stream()
+                .filter(n -> n.distanceKm() > after.distanceKm()
+                        || (n.distanceKm() == after.distanceKm() && n.bookId() > after.bookId()))
+                .sorted(Comparator.comparingDouble(GeoGridIndex.Neighbor::distanceKm)
+                        .thenComparingLong(GeoGridIndex.Neighbor::bookId))
+                .limit(limit)
+                .toList();
+        return new GeoGridIndex.Within(page, inRadius.size());
+    }
 
-        Sort sortObj = switch (sort == null ? "date_desc" : sort) {
-            case "price_asc"  -> Sort.by(Sort.Direction.ASC,  "price");
-            case "price_desc" -> Sort.by(Sort.Direction.DESC, "price");
-            case "date_asc"   -> Sort.by(Sort.Direction.ASC,  "createdAt");
-            case "distance"   -> Sort.by(Sort.Direction.DESC, "createdAt"); // JS re-sorts by distance client-side
-            default           -> Sort.by(Sort.Direction.DESC, "createdAt"); // date_desc
+    /**
+     * Map clusters of unsold located books in the viewport at the given cluster level.
+     * Before the index is loaded the books in view are read and aggregated per request.
+     */
+    public ClusterIndex.View mapClusters(double south, double west, double north, double east, int level) {
+        if (bookIndexService.isReady()) {
+            return bookIndexService.clusters(south, west, north, east, level);
+        }
+        ClusterIndex clusters = BookIndexService.newClusterIndex();
+        for (BookCard card : bookRepository.findCardsInBox(south, north, west, east)) {
+            clusters.put(card.id(), card.latitude(), card.longitude(), card.category());
+        }
+        return clusters.view(south, west, north, east, level);
+    }
+
+    // The listing filters applied to one card, as the database fallback of the listing applies them
+    private static boolean matches(BookSearchCriteria criteria, BookCard card) {
+        return (criteria.category() == null || criteria.category() == card.category())
+                && (criteria.condition() == null || criteria.condition() == card.condition())
+                && (criteria.minPrice() == null || card.price().compareTo(criteria.minPrice()) >= 0)
+                && (criteria.maxPrice() == null || card.price().compareTo(criteria.maxPrice()) <= 0)
+                && (!criteria.hasText() || card.title().toLowerCase(Locale.ROOT).contains(criteria.q())
+                        || card.author().toLowerCase(Locale.ROOT).contains(criteria.q()));
+    }
+
+    private List<BookCard> loadInOrder(long[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Long, BookCard> byId = new HashMap<>();
+        for (BookCard card : bookRepository.findCardsByIdIn(Arrays.stream(ids).boxed().toList())) {
+            byId.put(card.id(), card);
+        }
+        List<BookCard> page = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            BookCard book = byId.get(id);
+            if (book != null) {
+                page.add(book);
+            }
+        }
+        return page;
+    }
+
+    private static BitmapFilterIndex.Order orderFor(String sort) {
+        return switch (sort) {
+            case "price_asc"  -> BitmapFilterIndex.Order.PRICE_ASC;
+            case "price_desc" -> BitmapFilterIndex.Order.PRICE_DESC;
+            case "date_asc"   -> BitmapFilterIndex.Order.DATE_ASC;
+            default           -> BitmapFilterIndex.Order.DATE_DESC; // date_desc, distance without an origin
         };
+    }
 
-        return bookRepository.findAll(spec, sortObj);
+    private static BookCursor cursorAfter(String sort, BookCard last) {
+        return switch (sort) {
+            case "price_asc", "price_desc" -> BookCursor.of(last.price(), last.id());
+            default -> BookCursor.of(last.createdAt(), last.id());
+        };
+    }
+
+    // The cursor's sort key, or null for no cursor or one that does not parse (restart from the top)
+    private static Comparable<?> cursorKey(String sort, BookCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return sort.startsWith("price_") ? cursor.priceKey() : cursor.dateKey();
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
     // ─── Owner's listings ──────────────────────────────────────────────────────
-    public List<Book> getBooksByOwner(User owner) {
-        return bookRepository.findByOwnerOrderByCreatedAtDesc(owner);
+    public List<BookCard> getBooksByOwner(User owner) {
+        return bookRepository.findCardsByOwner(owner);
     }
 
     // ─── Get single book ───────────────────────────────────────────────────────
@@ -76,7 +380,108 @@ public class BookService {
         return bookRepository.findById(id);
     }
 
+    /**
+     * @return what the detail page shows of a book; concurrent requests for the same
+     *         book share one query and its immutable result
+     */
+    public Optional<BookDetail> getBookForDisplay(long id) {
+        return bookLoads.load(id, () -> bookRepository.findDetailById(id));
+    }
+
+    // ─── Get cover image (bytes are served from the image store) ──────────────
+    /**
+     * @return the book's cover once its file is in the image store; a file missing
+     *         from the store (say, on a fresh disk after a redeploy) is rebuilt from
+     *         {@code book_images} on first access
+     */
+    public Optional<CoverImage> getCover(long bookId) {
+        return coverLoads.load(bookId, () -> {
+            Optional<CoverImage> cover = bookRepository.findCoverById(bookId);
+            if (cover.isEmpty() || imageStore.contains(cover.get().hash())) {
+                return cover;
+            }
+            return exportStoredImage(bookId);
+        });
+    }
+
+    /**
+     * Copies a cover from the {@code book_images} table, its durable home, into the
+     * image store and records its hash on the book. The row is left in place.
+     */
+    public Optional<CoverImage> exportStoredImage(long bookId) {
+        List<CoverImage> exported = jdbcTemplate.query(SELECT_IMAGE_SQL, (rs, row) -> {
+            String type = Optional.ofNullable(rs.getString("content_type")).orElse(DEFAULT_IMAGE_TYPE);
+            try (InputStream in = rs.getBinaryStream("data")) {
+                return new CoverImage(imageStore.store(in), type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, bookId);
+        if (exported.isEmpty()) {
+            return Optional.empty();
+        }
+        bookRepository.updateImageHash(bookId, exported.get(0).hash());
+        return Optional.of(exported.get(0));
+    }
+
+    /**
+     * Copies a cover that exists only in the image store into {@code book_images}.
+     *
+     * @return whether a copy was written
+     */
+    @Transactional
+    public boolean backupStoredImage(long bookId) throws IOException {
+        Optional<CoverImage> cover = bookRepository.findCoverById(bookId);
+        if (cover.isEmpty() || !imageStore.contains(cover.get().hash())) {
+            return false;
+        }
+        writeDurableCopy(bookId, cover.get());
+        return true;
+    }
+
+    // ─── Store or replace a book's cover image ─────────────────────────────────
+    @Transactional
+    public void saveImage(Book book, MultipartFile imageFile) throws IOException {
+        CoverImage stored;
+        try (InputStream in = imageFile.getInputStream()) {
+            stored = imageStore.storeUpload(in);
+        }
+        thumbnailService.generate(stored.hash());
+        boolean changed = !stored.contentType().equals(book.getImageType())
+                || !stored.hash().equals(book.getImageHash());
+        if (changed || !bookImageRepository.existsById(book.getId())) {
+            writeDurableCopy(book.getId(), stored);
+        }
+        if (changed) {
+            book.setImageType(stored.contentType());
+            book.setImageHash(stored.hash());
+            bookRepository.save(book);
+            imageCache.invalidate(book.getId());
+        }
+    }
+
+    // book_images holds the durable copy; the file store is a cache rebuilt from it on a miss
+    private void writeDurableCopy(long bookId, CoverImage cover) throws IOException {
+        Path file = imageStore.path(cover.hash());
+        if (writeImageRow(UPDATE_IMAGE_SQL, file, bookId, cover.contentType()) == 0) {
+            writeImageRow(INSERT_IMAGE_SQL, file, bookId, cover.contentType());
+        }
+    }
+
+    // Streams the file into the statement; the driver reads it as it sends the row
+    private int writeImageRow(String sql, Path file, long bookId, String contentType) throws IOException {
+        int size = Math.toIntExact(Files.size(file));
+        try (InputStream in = Files.newInputStream(file)) {
+            return jdbcTemplate.update(sql, ps -> {
+                ps.setBinaryStream(1, in, size);
+                ps.setString(2, contentType);
+                ps.setLong(3, bookId);
+            });
+        }
+    }
+
     // ─── Create book ───────────────────────────────────────────────────────────
+    @Transactional
     public Book createBook(String title, String author, String description,
             BigDecimal price, BookCategory category, BookCondition condition,
             Double latitude, Double longitude, String address,
@@ -94,15 +499,16 @@ public class BookService {
         book.setAddress(address);
         book.setOwner(owner);
 
+        Book saved = bookRepository.save(book);
         if (imageFile != null && !imageFile.isEmpty()) {
-            book.setImageData(imageFile.getBytes());
-            book.setImageType(imageFile.getContentType());
+            saveImage(saved, imageFile);
         }
-
-        return bookRepository.save(book);
+        bookIndexService.bookSaved(saved);
+        return saved;
     }
 
     // ─── Update book ───────────────────────────────────────────────────────────
+    @Transactional
     public Book updateBook(long id, String title, String author, String description,
             BigDecimal price, BookCategory category, BookCondition condition,
             Double latitude, Double longitude, String address,
@@ -125,12 +531,12 @@ public class BookService {
         book.setLongitude(longitude);
         book.setAddress(address);
 
+        Book saved = bookRepository.save(book);
         if (imageFile != null && !imageFile.isEmpty()) {
-            book.setImageData(imageFile.getBytes());
-            book.setImageType(imageFile.getContentType());
+            saveImage(saved, imageFile);
         }
-
-        return bookRepository.save(book);
+        bookIndexService.bookSaved(saved);
+        return saved;
     }
 
     // ─── Delete book ───────────────────────────────────────────────────────────
@@ -141,7 +547,13 @@ public class BookService {
         if (!book.getOwner().getId().equals(requestingUser.getId())) {
             throw new SecurityException("Not authorized to delete this book");
         }
+        // The book's purchase requests, and their chats, go with it
+        List<Long> requestIds = purchaseRequestRepository.findIdsByBookId(id);
         bookRepository.delete(book);
+        bookIndexService.bookRemoved(id);
+        imageCache.invalidate(id);
+        chatAccessService.requestsRemoved(requestIds);
+        recentChatMessages.forget(requestIds);
     }
 
     // ─── Mark as sold ──────────────────────────────────────────────────────────
@@ -154,6 +566,7 @@ public class BookService {
         }
         book.setSold(true);
         bookRepository.save(book);
+        bookIndexService.bookSaved(book);
     }
 
     // ─── Haversine distance (km) between two lat/lng points ───────────────────
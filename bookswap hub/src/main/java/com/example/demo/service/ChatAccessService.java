@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import com.example.demo.dto.ChatParticipants;
+import com.example.demo.repository.PurchaseRequestRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Participants and status of each chat, cached so the chat endpoints authorize
+ * without touching the database.
+ * <p>
+ * An entry is loaded in one projection query on first use and kept in a bounded
+ * least-recently-used map. Writes that change who may chat — approving or
+ * rejecting a request, deleting a book or a user — drop entries once their
+ * transaction commits. A load that overlaps such a drop is returned but not
+ * stored, so a row read just before the commit never lingers in the cache.
+ */
+@Service
+public class ChatAccessService {
+
+    public record Stats(long hits, long misses, long invalidations, int entries, int maxEntries) {
+    }
+
+    private final PurchaseRequestRepository requestRepository;
+    private final int maxEntries;
+    private final LinkedHashMap<Long, ChatParticipants> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Bumped by every invalidation; all fields below are guarded by this
+    private long generation;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    public ChatAccessService(PurchaseRequestRepository requestRepository,
+            @Value("${app.chat.access-cache.max-entries:10000}") int maxEntries) {
+        this.requestRepository = requestRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    // ─── Lookup ───────────────────────────────────────────────────────────────
+    /**
+     * @return the request's buyer, book owner and status, or {@code null} if there is no such request
+     */
+    public ChatParticipants participants(long requestId) {
+        long loadGeneration;
+        synchronized (this) {
+            ChatParticipants cached = entries.get(requestId);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        ChatParticipants loaded = requestRepository.findParticipants(requestId).orElse(null);
+        if (loaded != null) {
+            store(requestId, loaded, loadGeneration);
+        }
+        return loaded;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, invalidations, entries.size(), maxEntries);
+    }
+
+    // ─── Invalidation ─────────────────────────────────────────────────────────
+    /** Drops one chat's entry after the current transaction commits. */
+    public void requestChanged(long requestId) {
+        AfterCommit.run(() -> forget(requestId));
+    }
+
+    /**
+     * Drops the entries of requests the current transaction deletes, once it commits.
+     * Read the ids before the delete that takes the requests with it.
+     */
+    public void requestsRemoved(Collection<Long> requestIds) {
+        if (!requestIds.isEmpty()) {
+            AfterCommit.run(() -> forget(requestIds));
+        }
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private synchronized void store(long requestId, ChatParticipants participants, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        entries.put(requestId, participants);
+        Iterator<ChatParticipants> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void forget(long requestId) {
+        generation++;
+        invalidations++;
+        entries.remove(requestId);
+    }
+
+    private synchronized void forget(Collection<Long> requestIds) {
+        generation++;
+        invalidations++;
+        for (Long requestId : requestIds) {
+            entries.remove(requestId);
+        }
+    }
+}
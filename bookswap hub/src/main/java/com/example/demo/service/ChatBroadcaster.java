@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process wake-ups for chat polls held open until a conversation changes.
+ * <p>
+ * A poll that finds nothing new subscribes to its conversation and parks; a sent
+ * message signals the conversation once its transaction commits, and every
+ * subscriber is woken exactly once, then forgotten. Waiting costs no database
+ * work. Subscribing must happen before the poll's own check for new messages so a
+ * message committed in between still wakes it.
+ * <p>
+ * Signals reach only polls parked on this instance.
+ */
+@Service
+public class ChatBroadcaster {
+
+    /** A parked poll's registration with its conversation. */
+    public interface Subscription {
+
+        /** Stops waiting; a no-op once woken. */
+        void cancel();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatBroadcaster.class);
+
+    private final Map<Long, Set<Runnable>> waiters = new ConcurrentHashMap<>();
+    private final AtomicLong wakeUps = new AtomicLong();
+
+    // ─── Subscribing ──────────────────────────────────────────────────────────
+    /**
+     * Runs {@code onMessage} once when the conversation next gets a message. It runs on
+     * the sender's thread after its commit, so it should be short.
+     */
+    public Subscription subscribe(long requestId, Runnable onMessage) {
+        // A distinct wrapper per subscription so the same callback can wait twice
+        Runnable waiter = onMessage::run;
+        // Added inside compute so a concurrent wake-up either sees the waiter or runs before it exists
+        waiters.compute(requestId, (k, set) -> {
+            Set<Runnable> out = set != null ? set : ConcurrentHashMap.newKeySet();
+            out.add(waiter);
+            return out;
+        });
+        return () -> waiters.computeIfPresent(requestId, (k, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // ─── Signalling ───────────────────────────────────────────────────────────
+    /**
+     * Wakes the conversation's parked polls after the current transaction commits,
+     * or at once outside a transaction.
+     */
+    public void messageSent(long requestId) {
+        AfterCommit.run(() -> wake(requestId));
+    }
+
+    public int waiting() {
+        return waiters.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public long wakeUps() {
+        return wakeUps.get();
+    }
+
+    private void wake(long requestId) {
+        Set<Runnable> woken = waiters.remove(requestId);
+        if (woken == null) {
+            return;
+        }
+        for (Runnable waiter : woken) {
+            wakeUps.incrementAndGet();
+            try {
+                waiter.run();
+            } catch (RuntimeException e) {
+                // One broken poll must not keep the others asleep or fail the send
+                logger.warn("Chat poll wake-up for request {} failed: {}", requestId, e.toString());
+            }
+        }
+    }
+}
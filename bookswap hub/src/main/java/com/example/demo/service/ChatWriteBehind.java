@@ -0,0 +1,255 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChatLine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional group commit for chat messages: sends enter a bounded queue and one
+ * background thread inserts them in JDBC batches, one transaction per batch.
+ * <p>
+ * A batch is flushed once it holds {@code batch-size} messages or
+ * {@code flush-interval} after its first message, whichever comes first. The single
+ * writer keeps queue order, so each conversation's messages get ascending ids in
+ * the order they were sent. Once a batch commits, its messages reach
+ * {@link RecentChatMessages} and wake parked polls as a direct send would.
+ * <p>
+ * With durability {@code FLUSHED} a send is acknowledged after its batch commits;
+ * with {@code QUEUED} as soon as it is queued, so messages still queued are lost
+ * if the process dies. Disabled by default.
+ */
+@Service
+public class ChatWriteBehind {
+
+    /** When a queued send counts as done. */
+    public enum Durability { QUEUED, FLUSHED }
+
+    public record Stats(boolean enabled, Durability durability, int queued, int capacity,
+                        long written, long batches, long rejected, long failed) {
+    }
+
+    private record Pending(long requestId, long senderId, String sender, String content,
+                           LocalDateTime sentAt, CompletableFuture<ChatLine> done) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatWriteBehind.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (request_id, sender_id, content, sent_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentChatMessages recentMessages;
+    private final ChatBroadcaster broadcaster;
+    private final boolean enabled;
+    private final Durability durability;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private volatile boolean stopping;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ChatWriteBehind(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           RecentChatMessages recentMessages,
+                           ChatBroadcaster broadcaster,
+                           @Value("${app.chat.write-behind.enabled:false}") boolean enabled,
+                           @Value("${app.chat.write-behind.durability:FLUSHED}") Durability durability,
+                           @Value("${app.chat.write-behind.capacity:10000}") int capacity,
+                           @Value("${app.chat.write-behind.batch-size:100}") int batchSize,
+                           @Value("${app.chat.write-behind.flush-interval:5ms}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recentMessages = recentMessages;
+        this.broadcaster = broadcaster;
+        this.enabled = enabled;
+        this.durability = durability;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushNanos = flushInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "chat-writer");
+        writer.setDaemon(true);
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    /** Stops taking sends and writes what is still queued before the database goes away. */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        stopping = true;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    // ─── Sending ──────────────────────────────────────────────────────────────
+    /**
+     * Queues a message for the next batch.
+     *
+     * @return completes with the stored message once its batch commits, or fails if
+     *         it could not be written or arrived during shutdown; {@code null} if the
+     *         queue is full
+     */
+    public CompletableFuture<ChatLine> submit(long requestId, long senderId, String sender, String content) {
+        if (!enabled || stopping) {
+            throw new IllegalStateException("Chat write-behind is not running");
+        }
+        Pending pending = new Pending(requestId, senderId, sender, content, LocalDateTime.now(),
+                new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        // Shutdown began after the check above: the writer either took the message and will
+        // complete it, or may have finished its final drain, so take it back and fail it
+        if (stopping && queue.remove(pending)) {
+            pending.done().completeExceptionally(new IllegalStateException("Chat write-behind is shutting down"));
+        }
+        return pending.done();
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, durability, queue.size(), capacity,
+                written.get(), batches.get(), rejected.get(), failed.get());
+    }
+
+    // ─── Writer ───────────────────────────────────────────────────────────────
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        boolean interrupted = false;
+        while (!stopping) {
+            try {
+                // Wakes now and then to notice shutdown; never interrupted mid-write
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < batchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Treated as shutdown; the interrupt is restored only after the drain below,
+                // so its JDBC calls are not cut short
+                interrupted = true;
+                stopping = true;
+            }
+            write(batch);
+            batch.clear();
+        }
+        // Drain so no acknowledged send is dropped on a clean shutdown
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> ids;
+        try {
+            ids = transactionTemplate.execute(status -> insert(batch));
+        } catch (RuntimeException e) {
+            // One bad row (say, a chat deleted meanwhile) fails the batch; retry alone, in order
+            for (Pending pending : batch) {
+                try {
+                    stored(pending, transactionTemplate.execute(status -> insert(List.of(pending))).get(0));
+                } catch (RuntimeException rowError) {
+                    failed.incrementAndGet();
+                    logger.warn("Could not store chat message for request {}: {}",
+                            pending.requestId(), rowError.toString());
+                    pending.done().completeExceptionally(rowError);
+                }
+            }
+            return;
+        }
+        batches.incrementAndGet();
+        for (int i = 0; i < batch.size(); i++) {
+            stored(batch.get(i), ids.get(i));
+        }
+    }
+
+    private List<Long> insert(List<Pending> rows) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Pending row = rows.get(i);
+                        ps.setLong(1, row.requestId());
+                        ps.setLong(2, row.senderId());
+                        ps.setString(3, row.content());
+                        ps.setTimestamp(4, Timestamp.valueOf(row.sentAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        if (keyList.size() != rows.size()) {
+            throw new IllegalStateException("Expected " + rows.size() + " generated ids, got " + keyList.size());
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> key : keyList) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    private void stored(Pending pending, long id) {
+        written.incrementAndGet();
+        ChatLine line = new ChatLine(id, pending.sender(), pending.content(), pending.sentAt());
+        // Committed already, so these apply at once; memory first so woken polls find it
+        recentMessages.messageSent(pending.requestId(), line);
+        broadcaster.messageSent(pending.requestId());
+        pending.done().complete(line);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cover bytes and response metadata for recently served images, held in direct
+ * buffers outside the Java heap so a hot cover is answered without a database
+ * lookup or a file read.
+ * <p>
+ * Eviction is segmented LRU: a new entry starts on probation and moves to the
+ * protected segment (at most 80% of the budget) on its second hit, so a crawl
+ * through many covers seen once cannot push out the first page everyone views.
+ * Entries larger than a sixteenth of the budget are not cached. Concurrent misses
+ * on the same cover share one file read.
+ */
+@Service
+public class ImageCache {
+
+    private static final double PROTECTED_SHARE = 0.8;
+    private static final int MAX_ENTRY_SHARE = 16;
+    // Invalidations bump their book's stripe, so only loads of books sharing it are turned away
+    private static final int STRIPES = 256;
+
+    /** A cached response; {@link #bytes()} returns a fresh read-only view each call. */
+    public record Entry(String etag, String contentType, long lastModified, ByteBuffer content) {
+
+        public ByteBuffer bytes() {
+            return content.asReadOnlyBuffer();
+        }
+
+        public int length() {
+            return content.capacity();
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, long invalidations,
+                        int entries, long residentBytes, long maxBytes, double hitRatio) {
+    }
+
+    private record Key(long bookId, String variant) {
+    }
+
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+    // Insertion order is recency order: entries are re-inserted on every hit
+    private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Key, Entry> protectedSegment = new LinkedHashMap<>();
+    private final SingleFlight<Key, Entry> loads;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    private long probationBytes;
+    private long protectedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public ImageCache(@Value("${app.images.cache.max-size:32MB}") DataSize maxSize,
+            @Value("${app.coalesce.timeout:5s}") Duration loadTimeout) {
+        this.maxBytes = maxSize.toBytes();
+        this.maxProtectedBytes = (long) (maxBytes * PROTECTED_SHARE);
+        this.loads = new SingleFlight<>(loadTimeout);
+    }
+
+    // ─── Reads ────────────────────────────────────────────────────────────────
+    /**
+     * @return the cached response for a book's cover variant, or {@code null}
+     */
+    public synchronized Entry get(long bookId, String variant) {
+        Key key = new Key(bookId, variant);
+        Entry entry = protectedSegment.remove(key);
+        if (entry == null) {
+            entry = probation.remove(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            probationBytes -= entry.length();
+        } else {
+            protectedBytes -= entry.length();
+        }
+        protectedSegment.put(key, entry);
+        protectedBytes += entry.length();
+        demoteOverflow();
+        hits++;
+        return entry;
+    }
+
+    /**
+     * @return the generation to pass to {@link #load}; read it before resolving the cover
+     */
+    public long generation(long bookId) {
+        return generations.get(stripe(bookId));
+    }
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    /**
+     * Copies {@code file} into a direct buffer and caches it, unless it is too large
+     * or the book was invalidated after {@code generation} was read. A caller that
+     * arrives while the same cover is loading gets that load's result.
+     *
+     * @return the cached entry, or {@code null} if nothing was stored
+     */
+    public Entry load(long bookId, String variant, long generation, Path file, long length,
+            String etag, String contentType, long lastModified) throws IOException {
+        if (length > maxBytes / MAX_ENTRY_SHARE) {
+            return null;
+        }
+        Key key = new Key(bookId, variant);
+        try {
+            return loads.load(key, () -> {
+                try {
+                    Entry entry = new Entry(etag, contentType, lastModified, read(file, length));
+                    return put(key, generation, entry) ? entry : null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Drops every cached variant of a book now and, inside a transaction, again
+     * after it commits so a request that read the old cover meanwhile cannot
+     * leave it behind.
+     */
+    public void invalidate(long bookId) {
+        evict(bookId);
+        AfterCommit.runIfInTransaction(() -> evict(bookId));
+    }
+
+    public synchronized Stats stats() {
+        long lookups = hits + misses;
+        return new Stats(hits, misses, evictions, invalidations, probation.size() + protectedSegment.size(),
+                probationBytes + protectedBytes, maxBytes, lookups == 0 ? 0 : (double) hits / lookups);
+    }
+
+    public SingleFlight.Stats loadStats() {
+        return loads.stats();
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    private static ByteBuffer read(Path file, long length) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // read until full; the file never changes under its hash
+            }
+        }
+        return content.flip();
+    }
+
+    private synchronized boolean put(Key key, long loadedGeneration, Entry entry) {
+        if (loadedGeneration != generations.get(stripe(key.bookId())) || protectedSegment.containsKey(key) || probation.containsKey(key)) {
+            return false;
+        }
+        probation.put(key, entry);
+        probationBytes += entry.length();
+        while (probationBytes + protectedBytes > maxBytes) {
+            if (!evictEldest(probation, false) && !evictEldest(protectedSegment, true)) {
+                break;
+            }
+            evictions++;
+        }
+        return true;
+    }
+
+    private synchronized void evict(long bookId) {
+        generations.incrementAndGet(stripe(bookId));
+        probationBytes -= removeBook(probation, bookId);
+        protectedBytes -= removeBook(protectedSegment, bookId);
+    }
+
+    private long removeBook(Map<Key, Entry> segment, long bookId) {
+        long freed = 0;
+        for (Iterator<Map.Entry<Key, Entry>> it = segment.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().bookId() == bookId) {
+                freed += e.getValue().length();
+                it.remove();
+                invalidations++;
+            }
+        }
+        return freed;
+    }
+
+    private static int stripe(long bookId) {
+        return (int) Math.floorMod(bookId, (long) STRIPES);
+    }
+
+    // Protected overflow goes back to probation as its most recent entry
+    private void demoteOverflow() {
+        Iterator<Map.Entry<Key, Entry>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && eldest.hasNext()) {
+            Map.Entry<Key, Entry> e = eldest.next();
+            eldest.remove();
+            protectedBytes -= e.getValue().length();
+            probation.put(e.getKey(), e.getValue());
+            probationBytes += e.getValue().length();
+        }
+    }
+
+    private boolean evictEldest(LinkedHashMap<Key, Entry> segment, boolean isProtected) {
+        Iterator<Entry> eldest = segment.values().iterator();
+        if (!eldest.hasNext()) {
+            return false;
+        }
+        int length = eldest.next().length();
+        eldest.remove();
+        if (isProtected) {
+            protectedBytes -= length;
+        } else {
+            probationBytes -= length;
+        }
+        return true;
+    }
+}
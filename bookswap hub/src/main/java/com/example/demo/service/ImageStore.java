@@ -0,0 +1,242 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CoverImage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed file store for cover images.
+ * <p>
+ * A file is named by the SHA-256 of its bytes and sharded by the first two hex
+ * digits ({@code ab/abcdef...}), so identical uploads share one file and a stored
+ * file never changes. Resized variants live beside them under
+ * {@code variants/<name>/}, keyed by the same hash. Writes go to a temporary
+ * file in the target directory and are moved into place, so readers only ever
+ * see complete files.
+ * <p>
+ * The durable copy of each cover stays in {@code book_images}; this store is a
+ * cache of it that {@code BookService} rebuilds file by file on a miss, so the
+ * directory may live on disk that does not survive a redeploy.
+ */
+@Service
+public class ImageStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT = Pattern.compile("[a-z]+");
+
+    private static final int SNIFF_BYTES = 12;
+    private static final long UPLOAD_WAIT_SECONDS = 10;
+
+    private final Path root;
+    private final long maxUploadBytes;
+    // Uploads being written at once; each holds a request thread and disk bandwidth
+    private final Semaphore uploadPermits;
+
+    public ImageStore(@Value("${app.images.dir:data/images}") String dir,
+            @Value("${app.images.max-size:10MB}") DataSize maxUploadSize,
+            @Value("${app.images.max-concurrent-uploads:4}") int maxConcurrentUploads) {
+        this.root = Path.of(dir).toAbsolutePath().normalize();
+        this.maxUploadBytes = maxUploadSize.toBytes();
+        this.uploadPermits = new Semaphore(maxConcurrentUploads, true);
+    }
+
+    /**
+     * Streams an uploaded image into the store. The type is taken from the file's
+     * leading bytes, not from what the client declared, and the size is checked
+     * as bytes arrive, so nothing larger than a read buffer is held on the heap.
+     *
+     * @throws IllegalArgumentException if the bytes are not a supported image or exceed the size limit
+     * @throws IllegalStateException    if too many uploads are in progress
+     */
+    public CoverImage storeUpload(InputStream in) throws IOException {
+        try {
+            if (!uploadPermits.tryAcquire(UPLOAD_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Too many uploads in progress, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Upload interrupted");
+        }
+        try {
+            byte[] head = in.readNBytes(SNIFF_BYTES);
+            String type = sniffImageType(head);
+            if (type == null) {
+                throw new IllegalArgumentException("Only JPEG, PNG, GIF and WebP images are supported");
+            }
+            InputStream whole = new SequenceInputStream(new ByteArrayInputStream(head), in);
+            return new CoverImage(store(new SizeLimitedInputStream(whole, maxUploadBytes)), type);
+        } finally {
+            uploadPermits.release();
+        }
+    }
+
+    /**
+     * Streams {@code in} into the store.
+     *
+     * @return the hex SHA-256 naming the stored file
+     */
+    public String store(InputStream in) throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            moveIntoPlace(temp, path(hash));
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Stores a file derived from the original {@code hash}, such as a resized
+     * variant. Derived files are as immutable as their source.
+     */
+    public void storeVariant(String hash, String variant, byte[] bytes) throws IOException {
+        Path target = variantPath(hash, variant);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean contains(String hash) {
+        return hash != null && HASH.matcher(hash).matches() && Files.isRegularFile(path(hash));
+    }
+
+    /**
+     * @return where the file for {@code hash} lives, whether or not it exists
+     */
+    public Path path(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not an image hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public Optional<Path> findVariant(String hash, String variant) {
+        Path file = variantPath(hash, variant);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private Path variantPath(String hash, String variant) {
+        if (!VARIANT.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Not an image variant: " + variant);
+        }
+        return root.resolve("variants").resolve(variant).resolve(hash.substring(0, 2)).resolve(path(hash).getFileName());
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another writer of the same bytes got there first
+        }
+    }
+
+    // Magic numbers of the formats browsers render as covers
+    static String sniffImageType(byte[] head) {
+        if (startsWith(head, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(head, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(head, 'R', 'I', 'F', 'F') && head.length >= 12
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Fails the copy once more than {@code limit} bytes have been read. */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            count += n;
+            if (count > limit) {
+                throw new IllegalArgumentException("Image is larger than " + limit / (1024 * 1024) + " MB");
+            }
+        }
+    }
+}
@@ -11,9 +11,12 @@ import java.util.List;
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
+    private final PageVersionService pageVersionService;
 
-    public NotificationService(NotificationRepository notificationRepository) {
+    public NotificationService(NotificationRepository notificationRepository,
+                               PageVersionService pageVersionService) {
         this.notificationRepository = notificationRepository;
+        this.pageVersionService = pageVersionService;
     }
 
     // ─── Create a notification for a user ─────────────────────────────────────
@@ -22,6 +25,7 @@ public class NotificationService {
         n.setRecipient(recipient);
         n.setMessage(message);
         notificationRepository.save(n);
+        pageVersionService.userChanged(recipient);
     }
 
     // ─── Get all notifications for a user ─────────────────────────────────────
@@ -39,5 +43,6 @@ public class NotificationService {
         List<Notification> all = notificationRepository.findByRecipientOrderByCreatedAtDesc(user);
         all.stream().filter(n -> !n.isRead()).forEach(n -> n.setRead(true));
         notificationRepository.saveAll(all);
+        pageVersionService.userChanged(user);
     }
 }
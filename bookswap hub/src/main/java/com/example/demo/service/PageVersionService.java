@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import com.example.demo.model.User;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Weak ETags for server-rendered catalog pages.
+ * <p>
+ * A tag combines what the page was rendered from: the catalog or book version
+ * kept by {@link BookIndexService}, and the viewer. The viewer part covers the
+ * per-user bits of a page (the notification badge, wishlist and request state),
+ * through a per-user version bumped by the services that change them, and the
+ * session, whose CSRF token is embedded in every form. A startup stamp keeps
+ * tags issued before a restart, when all counters start over, from matching.
+ */
+@Service
+public class PageVersionService {
+
+    private final BookIndexService bookIndexService;
+    private final String startup = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    public PageVersionService(BookIndexService bookIndexService) {
+        this.bookIndexService = bookIndexService;
+    }
+
+    // ─── Tags ─────────────────────────────────────────────────────────────────
+    // Read before the page's data, so a page is never tagged newer than its content
+    public String catalogTag(Authentication authentication, HttpServletRequest request) {
+        return tag("c" + bookIndexService.catalogVersion(), authentication, request);
+    }
+
+    public String bookTag(long bookId, Authentication authentication, HttpServletRequest request) {
+        return tag("b" + bookId + "." + bookIndexService.bookVersion(bookId), authentication, request);
+    }
+
+    // ─── Write notifications ──────────────────────────────────────────────────
+    /**
+     * Marks every page rendered for {@code user} as stale once the surrounding
+     * transaction commits.
+     */
+    public void userChanged(User user) {
+        String username = user.getUsername();
+        AfterCommit.run(() -> userVersions.computeIfAbsent(username, k -> new AtomicLong()).incrementAndGet());
+    }
+
+    // ─── Internals ────────────────────────────────────────────────────────────
+    // Hashes keep usernames and session ids out of response headers
+    private String tag(String content, Authentication authentication, HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        String sessionPart = session == null ? "-" : Integer.toHexString(session.getId().hashCode());
+        String viewer = "a";
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            AtomicLong version = userVersions.get(authentication.getName());
+            viewer = Integer.toHexString(authentication.getName().hashCode()) + "." + (version == null ? 0 : version.get());
+        }
+        return "W/\"" + startup + "." + content + "." + viewer + "." + sessionPart + "\"";
+    }
+}
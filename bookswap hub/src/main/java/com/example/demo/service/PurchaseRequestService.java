@@ -15,13 +15,25 @@ public class PurchaseRequestService {
     private final PurchaseRequestRepository requestRepository;
     private final SaleRecordRepository saleRecordRepository;
     private final NotificationService notificationService;
+    private final BookIndexService bookIndexService;
+    private final PageVersionService pageVersionService;
+    private final ChatAccessService chatAccessService;
+    private final RecentChatMessages recentChatMessages;
 
     public PurchaseRequestService(PurchaseRequestRepository requestRepository,
                                    SaleRecordRepository saleRecordRepository,
-                                   NotificationService notificationService) {
+                                   NotificationService notificationService,
+                                   BookIndexService bookIndexService,
+                                   PageVersionService pageVersionService,
+                                   ChatAccessService chatAccessService,
+                                   RecentChatMessages recentChatMessages) {
         this.requestRepository = requestRepository;
         this.saleRecordRepository = saleRecordRepository;
         this.notificationService = notificationService;
+        this.bookIndexService = bookIndexService;
+        this.pageVersionService = pageVersionService;
+        this.chatAccessService = chatAccessService;
+        this.recentChatMessages = recentChatMessages;
     }
 
     // ─── Send a buy request ────────────────────────────────────────────────────
@@ -42,6 +54,7 @@ public class PurchaseRequestService {
         req.setMessage(message);
         req.setStatus(RequestStatus.PENDING);
         PurchaseRequest saved = requestRepository.save(req);
+        pageVersionService.userChanged(requester);
         // Notify the book owner about the new request
         notificationService.sendNotification(book.getOwner(),
                 "📖 New buy request for \""
@@ -70,6 +83,8 @@ public class PurchaseRequestService {
         }
         req.setStatus(RequestStatus.APPROVED);
         requestRepository.save(req);
+        chatAccessService.requestChanged(requestId);
+        recentChatMessages.forget(requestId);
         // Notify the buyer
         notificationService.sendNotification(req.getRequester(),
                 "✅ Your request for \""
@@ -87,6 +102,8 @@ public class PurchaseRequestService {
         }
         req.setStatus(RequestStatus.REJECTED);
         requestRepository.save(req);
+        chatAccessService.requestChanged(requestId);
+        recentChatMessages.forget(requestId);
         // Notify the buyer
         notificationService.sendNotification(req.getRequester(),
                 "❌ Your request for \""
@@ -125,6 +142,7 @@ public class PurchaseRequestService {
 
         req.setSaleRecord(sale);
         req.getBook().setSold(true);
+        bookIndexService.bookSaved(req.getBook());
 
         notificationService.sendNotification(req.getRequester(),
                 "💵 Offline payment of ₹" + amount + " for \""
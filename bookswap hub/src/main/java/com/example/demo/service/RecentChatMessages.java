@@ -0,0 +1,280 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AfterCommit;
+import com.example.demo.dto.ChatLine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The last messages of each active chat, kept in memory so polls and page opens
+ * for recent history skip the database.
+ * <p>
+ * Each chat holds a ring of at most {@code messagesPerChat} lines plus a floor id:
+ * every message of the chat with a larger id is in the ring, so a read after an id
+ * at or above the floor is answered exactly, and anything older goes to the
+ * database. Rings are seeded from database reads and extended by sent messages
+ * once their transaction commits; a seed read that overlaps a send to the same
+ * chat is dropped rather than stored incomplete.
+ * <p>
+ * Chats idle for longer than {@code idleTimeout} are dropped, and when the
+ * estimated size of all rings passes {@code maxMemory} the least recently used
+ * chats go first. Writes that change or remove a chat — approving or rejecting its
+ * request, deleting a book or a user — drop its ring once their transaction commits.
+ */
+@Service
+public class RecentChatMessages {
+
+    public record Stats(long hits, long misses, long evictions, int chats, long bytes, long maxBytes) {
+    }
+
+    // Sends bump the stamp of their chat's stripe, so seeds can tell they raced with one
+    private static final int STRIPES = 256;
+    // Rough heap cost of a line beyond its text, and of a ring beyond its lines
+    private static final int LINE_OVERHEAD_BYTES = 96;
+    private static final int RING_OVERHEAD_BYTES = 160;
+
+    private final int messagesPerChat;
+    private final long maxBytes;
+    private final long idleNanos;
+    private final LinkedHashMap<Long, Ring> rings = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    // All fields below are guarded by this
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public RecentChatMessages(@Value("${app.chat.recent.messages-per-chat:50}") int messagesPerChat,
+            @Value("${app.chat.recent.max-memory:8MB}") DataSize maxMemory,
+            @Value("${app.chat.recent.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.messagesPerChat = messagesPerChat;
+        this.maxBytes = maxMemory.toBytes();
+        this.idleNanos = idleTimeout.toNanos();
+    }
+
+    // ─── Reads ────────────────────────────────────────────────────────────────
+    /**
+     * @return the chat's messages with an id above {@code afterId}, oldest first, or
+     *         {@code null} if memory cannot answer and the caller must read the database
+     */
+    public synchronized List<ChatLine> after(long requestId, long afterId) {
+        Ring ring = rings.get(requestId);
+        if (ring == null || afterId < ring.floorId) {
+            misses++;
+            return null;
+        }
+        hits++;
+        ring.touch();
+        return ring.after(afterId);
+    }
+
+    /**
+     * @return the chat's newest {@code limit} messages, oldest first, or {@code null} if
+     *         memory cannot tell they are the newest
+     */
+    public synchronized List<ChatLine> latest(long requestId, int limit) {
+        Ring ring = rings.get(requestId);
+        // A floor of 0 means the ring holds the whole chat
+        if (ring == null || (ring.floorId > 0 && ring.lines.size() < limit)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        ring.touch();
+        return List.copyOf(ring.lines.subList(Math.max(0, ring.lines.size() - limit), ring.lines.size()));
+    }
+
+    /** Taken before a database read whose result is then passed to {@link #seed}. */
+    public long stamp(long requestId) {
+        return stamps.get(stripe(requestId));
+    }
+
+    /**
+     * Keeps the result of a database read of every message with an id above
+     * {@code afterId}, unless a message was sent to the chat since {@code stamp}.
+     */
+    public void seed(long requestId, long afterId, List<ChatLine> lines, long stamp) {
+        synchronized (this) {
+            if (stamps.get(stripe(requestId)) != stamp) {
+                return;
+            }
+            Ring ring = rings.get(requestId);
+            if (ring != null && ring.floorId <= afterId) {
+                // Already knows at least as much
+                return;
+            }
+            if (ring != null) {
+                bytes -= ring.bytes;
+            }
+            ring = new Ring(afterId);
+            for (ChatLine line : lines) {
+                ring.add(line, messagesPerChat);
+            }
+            rings.put(requestId, ring);
+            bytes += ring.bytes;
+            trim();
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, rings.size(), bytes, maxBytes);
+    }
+
+    // ─── Writes ───────────────────────────────────────────────────────────────
+    /**
+     * Adds a sent message to its chat's ring once the current transaction commits,
+     * or at once outside a transaction.
+     */
+    public void messageSent(long requestId, ChatLine line) {
+        AfterCommit.run(() -> append(requestId, line));
+    }
+
+    private void append(long requestId, ChatLine line) {
+        stamps.incrementAndGet(stripe(requestId));
+        synchronized (this) {
+            Ring ring = rings.get(requestId);
+            if (ring == null) {
+                // Not active here; the next read seeds it from the database
+                return;
+            }
+            bytes -= ring.bytes;
+            ring.add(line, messagesPerChat);
+            ring.touch();
+            bytes += ring.bytes;
+            trim();
+        }
+    }
+
+    // ─── Invalidation ─────────────────────────────────────────────────────────
+    /** Drops one chat's messages after the current transaction commits. */
+    public void forget(long requestId) {
+        AfterCommit.run(() -> drop(requestId));
+    }
+
+    /** Drops the messages of chats the current transaction deletes, once it commits. */
+    public void forget(Collection<Long> requestIds) {
+        if (!requestIds.isEmpty()) {
+            AfterCommit.run(() -> requestIds.forEach(this::drop));
+        }
+    }
+
+    /**
+     * Drops every chat's messages after the current transaction commits; a last resort
+     * for changes whose chats cannot be listed, as it sends every open chat back to the database.
+     */
+    public void forgetAll() {
+        AfterCommit.run(this::dropAll);
+    }
+
+    private void drop(long requestId) {
+        // Also fails seeds still reading the chat from before the change
+        stamps.incrementAndGet(stripe(requestId));
+        synchronized (this) {
+            Ring ring = rings.remove(requestId);
+            if (ring != null) {
+                bytes -= ring.bytes;
+            }
+        }
+    }
+
+    private void dropAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        synchronized (this) {
+            rings.clear();
+            bytes = 0;
+        }
+    }
+
+    // ─── Eviction ─────────────────────────────────────────────────────────────
+    @Scheduled(fixedDelayString = "PT1M")
+    public synchronized void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<Ring> eldest = rings.values().iterator();
+        while (eldest.hasNext()) {
+            Ring ring = eldest.next();
+            // Access order: everything after the first fresh ring is fresher
+            if (now - ring.lastUsed <= idleNanos) {
+                break;
+            }
+            bytes -= ring.bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Callers hold the monitor
+    private void trim() {
+        Iterator<Ring> eldest = rings.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static int stripe(long requestId) {
+        return (int) Math.floorMod(requestId, (long) STRIPES);
+    }
+
+    private static long weigh(ChatLine line) {
+        return LINE_OVERHEAD_BYTES + 2L * (line.content().length() + line.sender().length());
+    }
+
+    /** Lines in id order; every message of the chat with an id above floorId is here. */
+    private static final class Ring {
+        long floorId;
+        long bytes = RING_OVERHEAD_BYTES;
+        long lastUsed = System.nanoTime();
+        private final ArrayList<ChatLine> lines = new ArrayList<>();
+
+        Ring(long floorId) {
+            this.floorId = floorId;
+        }
+
+        void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        // Keeps id order even when sends commit out of order; past capacity the oldest goes and raises the floor
+        void add(ChatLine line, int capacity) {
+            if (line.id() <= floorId) {
+                return;
+            }
+            int at = lines.size();
+            while (at > 0 && lines.get(at - 1).id() >= line.id()) {
+                at--;
+            }
+            if (at < lines.size() && lines.get(at).id().equals(line.id())) {
+                return;
+            }
+            lines.add(at, line);
+            bytes += weigh(line);
+            while (lines.size() > capacity) {
+                ChatLine dropped = lines.remove(0);
+                bytes -= weigh(dropped);
+                floorId = dropped.id();
+            }
+        }
+
+        List<ChatLine> after(long afterId) {
+            int from = lines.size();
+            while (from > 0 && lines.get(from - 1).id() > afterId) {
+                from--;
+            }
+            return List.copyOf(lines.subList(from, lines.size()));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one.
+ * <p>
+ * The first caller for a key runs the loader on its own thread; callers that
+ * arrive while it runs wait for its result instead of starting another load, and
+ * see the same value or the same exception. Nothing is cached: once the load
+ * finishes the next caller starts a fresh one. A waiter gives up after the
+ * configured timeout with an {@link IllegalStateException}; the load itself is
+ * not cancelled.
+ * <p>
+ * Values are handed to several threads, so they should be immutable or at least
+ * never modified by a caller.
+ */
+public class SingleFlight<K, V> {
+
+    public record Stats(long loads, long coalesced, long failures, long timeouts, int inFlight) {
+    }
+
+    private final long timeoutNanos;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public SingleFlight(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * @return the loader's value, or the value of a load of the same key already running
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return await(running);
+        }
+
+        loads.incrementAndGet();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.incrementAndGet();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(loads.get(), coalesced.get(), failures.get(), timeouts.get(), inFlight.size());
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            // Rethrow the leader's exception as is so every caller handles the same failure
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw new IllegalStateException("Timed out waiting for a load already in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a load already in progress");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders fixed-size JPEG variants of stored covers in the background.
+ * <p>
+ * Work runs on a small bounded pool so a burst of large uploads cannot take over
+ * the CPU or the heap; when the queue is full a request is dropped and picked up
+ * again the next time someone asks for the variant. The source is decoded once,
+ * subsampled on read when it is much larger than the biggest variant, and each
+ * variant is scaled down from it in halving steps. Sources with more pixels than
+ * {@code app.images.max-pixels} are never decoded and are only served as uploaded.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+    private static final float JPEG_QUALITY = 0.85f;
+
+    /** Sizes a cover can be requested at; each fits within its box, never upscaled. */
+    public enum Variant {
+        THUMB(240, 320), MEDIUM(600, 800);
+
+        final int maxWidth;
+        final int maxHeight;
+
+        Variant(int maxWidth, int maxHeight) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Optional<Variant> fromParam(String value) {
+            return Arrays.stream(values()).filter(v -> v.key().equals(value)).findFirst();
+        }
+    }
+
+    private final ImageStore imageStore;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Sources ImageIO cannot decode; they are only ever served as uploaded
+    private final Set<String> undecodable = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailService(ImageStore imageStore,
+            @Value("${app.images.thumbnail-threads:2}") int threads,
+            @Value("${app.images.thumbnail-queue:64}") int queueSize,
+            @Value("${app.images.max-pixels:40000000}") long maxPixels) {
+        this.imageStore = imageStore;
+        this.maxPixels = maxPixels;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ─── Queries ──────────────────────────────────────────────────────────────
+    public Optional<Path> find(String hash, Variant variant) {
+        return imageStore.findVariant(hash, variant.key());
+    }
+
+    // ─── Generation ───────────────────────────────────────────────────────────
+    /**
+     * Queues rendering of every missing variant of {@code hash}; returns at once.
+     */
+    public void generate(String hash) {
+        if (undecodable.contains(hash) || allVariantsExist(hash) || !pending.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    render(hash);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not render variants of image {}: {}", hash, e.toString());
+                } finally {
+                    pending.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(hash);
+        }
+    }
+
+    void render(String hash) throws IOException {
+        BufferedImage source = decode(imageStore.path(hash), maxPixels);
+        if (source == null) {
+            undecodable.add(hash);
+            return;
+        }
+        for (Variant variant : Variant.values()) {
+            if (find(hash, variant).isEmpty()) {
+                imageStore.storeVariant(hash, variant.key(), encodeJpeg(scale(source, variant)));
+            }
+        }
+    }
+
+    private boolean allVariantsExist(String hash) {
+        return Arrays.stream(Variant.values()).allMatch(v -> find(hash, v).isPresent());
+    }
+
+    // ─── Image work ───────────────────────────────────────────────────────────
+    // Reads every nth pixel when the source is at least twice the largest box in either direction;
+    // null when no reader knows the format or the source has more than maxPixels pixels
+    static BufferedImage decode(Path file, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("Not rendering variants of {}: {}x{} exceeds {} pixels",
+                            file.getFileName(), width, height, maxPixels);
+                    return null;
+                }
+                // The side furthest over its box sets the step, as it sets the final scale
+                int step = Math.max(1, Math.max(width / (2 * Variant.MEDIUM.maxWidth),
+                        height / (2 * Variant.MEDIUM.maxHeight)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halving steps keep bilinear filtering from dropping detail on large reductions
+    static BufferedImage scale(BufferedImage source, Variant variant) {
+        double ratio = Math.min(1.0, Math.min((double) variant.maxWidth / source.getWidth(),
+                (double) variant.maxHeight / source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            // RGB on white: JPEG has no alpha channel
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
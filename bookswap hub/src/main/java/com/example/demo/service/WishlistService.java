@@ -1,5 +1,6 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.WishlistItem;
 import com.example.demo.model.Book;
 import com.example.demo.model.User;
 import com.example.demo.model.Wishlist;
@@ -13,9 +14,11 @@ import java.util.List;
 public class WishlistService {
 
     private final WishlistRepository wishlistRepository;
+    private final PageVersionService pageVersionService;
 
-    public WishlistService(WishlistRepository wishlistRepository) {
+    public WishlistService(WishlistRepository wishlistRepository, PageVersionService pageVersionService) {
         this.wishlistRepository = wishlistRepository;
+        this.pageVersionService = pageVersionService;
     }
 
     // ─── Save a book to wishlist ───────────────────────────────────────────────
@@ -26,14 +29,17 @@ public class WishlistService {
             w.setUser(user);
             w.setBook(book);
             wishlistRepository.save(w);
+            pageVersionService.userChanged(user);
         }
     }
 
     // ─── Remove a book from wishlist ──────────────────────────────────────────
     @Transactional
     public void removeBook(User user, Book book) {
-        wishlistRepository.findByUserAndBook(user, book)
-                .ifPresent(wishlistRepository::delete);
+        wishlistRepository.findByUserAndBook(user, book).ifPresent(w -> {
+            wishlistRepository.delete(w);
+            pageVersionService.userChanged(user);
+        });
     }
 
     // ─── Toggle: save if not saved, remove if already saved ──────────────────
@@ -49,13 +55,13 @@ public class WishlistService {
     }
 
     // ─── Check if a book is already wishlisted ────────────────────────────────
-    public boolean isWishlisted(User user, Book book) {
-        return wishlistRepository.existsByUserAndBook(user, book);
+    public boolean isWishlisted(User user, long bookId) {
+        return wishlistRepository.existsByUserAndBookId(user, bookId);
     }
 
     // ─── Get all saved books for a user ───────────────────────────────────────
-    public List<Wishlist> getWishlistForUser(User user) {
-        return wishlistRepository.findByUserOrderBySavedAtDesc(user);
+    public List<WishlistItem> getWishlistForUser(User user) {
+        return wishlistRepository.findItemsByUser(user);
     }
 
     // ─── Count how many users wishlisted a book ───────────────────────────────
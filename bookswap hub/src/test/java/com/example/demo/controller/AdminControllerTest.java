@@ -0,0 +1,91 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ChatLine;
+import com.example.demo.dto.ChatParticipants;
+import com.example.demo.model.RequestStatus;
+import com.example.demo.repository.BookRepository;
+import com.example.demo.repository.PurchaseRequestRepository;
+import com.example.demo.repository.SaleRecordRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.BookIndexService;
+import com.example.demo.service.BookService;
+import com.example.demo.service.ChatAccessService;
+import com.example.demo.service.ChatWriteBehind;
+import com.example.demo.service.ImageCache;
+import com.example.demo.service.RecentChatMessages;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdminControllerTest {
+
+    private static final ChatParticipants APPROVED =
+            new ChatParticipants(1L, "buyer", 2L, "owner", RequestStatus.APPROVED);
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private PurchaseRequestRepository purchaseRequestRepository;
+    @Mock
+    private SaleRecordRepository saleRecordRepository;
+    @Mock
+    private BookService bookService;
+    @Mock
+    private BookIndexService bookIndexService;
+    @Mock
+    private ImageCache imageCache;
+    @Mock
+    private ChatWriteBehind chatWriteBehind;
+
+    private ChatAccessService chatAccessService;
+    private RecentChatMessages recentChatMessages;
+    private AdminController adminController;
+
+    @BeforeEach
+    void setUp() {
+        chatAccessService = new ChatAccessService(purchaseRequestRepository, 100);
+        recentChatMessages = new RecentChatMessages(50, DataSize.ofKilobytes(64), Duration.ofMinutes(30));
+        adminController = new AdminController(userRepository, bookRepository, purchaseRequestRepository,
+                saleRecordRepository, bookService, bookIndexService, imageCache, chatAccessService,
+                recentChatMessages, chatWriteBehind);
+    }
+
+    @Test
+    void deletingABookStopsAuthorizingItsChats() {
+        when(purchaseRequestRepository.findParticipants(7L)).thenReturn(Optional.of(APPROVED), Optional.empty());
+        when(purchaseRequestRepository.findParticipants(8L)).thenReturn(Optional.of(APPROVED));
+        when(purchaseRequestRepository.findIdsByBookId(3L)).thenReturn(List.of(7L));
+        assertEquals(APPROVED, chatAccessService.participants(7L));
+        assertEquals(APPROVED, chatAccessService.participants(8L));
+        recentChatMessages.seed(7L, 0, List.of(new ChatLine(1L, "buyer", "hello", LocalDateTime.now())),
+                recentChatMessages.stamp(7L));
+        recentChatMessages.seed(8L, 0, List.of(new ChatLine(2L, "buyer", "hi", LocalDateTime.now())),
+                recentChatMessages.stamp(8L));
+
+        adminController.deleteBook(3L, new RedirectAttributesModelMap());
+
+        verify(bookRepository).deleteById(3L);
+        assertNull(chatAccessService.participants(7L), "the cached approval went with the book");
+        assertEquals(APPROVED, chatAccessService.participants(8L), "another book's chat stays cached");
+        verify(purchaseRequestRepository).findParticipants(8L);
+        assertNull(recentChatMessages.after(7L, 0), "so did the chat's messages");
+        assertEquals(1, recentChatMessages.after(8L, 0).size(), "another book's messages stay in memory");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.search;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BitmapFilterIndexTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private BitmapFilterIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BitmapFilterIndex();
+        put(1, "100", BookCategory.FICTION, BookCondition.NEW, 1);
+        put(2, "250", BookCategory.FICTION, BookCondition.OLD, 2);
+        put(3, "250", BookCategory.SCIENCE, BookCondition.NEW, 3);
+        put(4, "50", BookCategory.FICTION, BookCondition.NEW, 4);
+    }
+
+    private void put(long id, String price, BookCategory category, BookCondition condition, int minutes) {
+        index.put(new BookDocument(id, new BigDecimal(price), category, condition, null, null,
+                T0.plusMinutes(minutes)));
+    }
+
+    @Test
+    void combinesFiltersAndInclusivePriceRange() {
+        BitSet fiction = index.filter(BookCategory.FICTION, null, new BigDecimal("100"), new BigDecimal("250"));
+
+        assertArrayEquals(new long[] { 1, 2 },
+                index.page(fiction, BitmapFilterIndex.Order.PRICE_ASC, null, 0, 10));
+        assertEquals(4, index.filter(null, null, null, null).cardinality());
+    }
+
+    @Test
+    void pagesFromCursorInBothDirections() {
+        BitSet all = index.filter(null, null, null, null);
+
+        assertArrayEquals(new long[] { 3, 2 },
+                index.page(all, BitmapFilterIndex.Order.PRICE_DESC, null, 0, 2));
+        assertArrayEquals(new long[] { 1, 4 },
+                index.page(all, BitmapFilterIndex.Order.PRICE_DESC, new BigDecimal("250.00"), 2, 10));
+        assertArrayEquals(new long[] { 3, 4 },
+                index.page(all, BitmapFilterIndex.Order.DATE_ASC, T0.plusMinutes(2), 2, 10));
+    }
+
+    @Test
+    void reflectsUpdatesAndRemovals() {
+        put(4, "900", BookCategory.FICTION, BookCondition.NEW, 4);
+        index.remove(1);
+
+        BitSet all = index.filter(null, null, null, null);
+        assertArrayEquals(new long[] { 2, 3, 4 }, index.page(all, BitmapFilterIndex.Order.PRICE_ASC, null, 0, 10));
+        assertEquals(0, index.filter(null, null, null, new BigDecimal("200")).cardinality());
+    }
+
+    @Test
+    void reusesOrdinalsOfRemovedBooks() {
+        for (int round = 0; round < 100; round++) {
+            index.remove(4);
+            put(4, "50", BookCategory.FICTION, BookCondition.NEW, 4);
+        }
+        index.remove(1);
+        put(5, "75", BookCategory.SCIENCE, BookCondition.OLD, 5);
+
+        BitSet all = index.filter(null, null, null, null);
+        assertEquals(4, all.length(), "no ordinal beyond the four live rows");
+        assertArrayEquals(new long[] { 4, 5, 2, 3 }, index.page(all, BitmapFilterIndex.Order.PRICE_ASC, null, 0, 10));
+        assertArrayEquals(new long[] { 5 }, index.page(index.filter(BookCategory.SCIENCE, BookCondition.OLD, null, null),
+                BitmapFilterIndex.Order.DATE_DESC, null, 0, 10));
+    }
+}
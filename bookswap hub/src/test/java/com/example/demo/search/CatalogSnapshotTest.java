@@ -0,0 +1,56 @@
+package com.example.demo.search;
+
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CatalogSnapshotTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000);
+
+    @TempDir
+    Path dir;
+
+    private final List<CatalogSnapshot.Entry> entries = List.of(
+            new CatalogSnapshot.Entry(new BookDocument(1, new BigDecimal("249.50"), BookCategory.FICTION,
+                    BookCondition.NEW, 12.97, 77.59, T0), "Dune", "Frank Herbert", "desert planet spice"),
+            new CatalogSnapshot.Entry(new BookDocument(2, new BigDecimal("1E+3"), BookCategory.SCIENCE,
+                    BookCondition.OLD, null, null, null), "Éléments", "Euclide", null));
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        Path file = dir.resolve("catalog.snap");
+        CatalogSnapshot.write(file, T0, entries);
+
+        CatalogSnapshot.Contents contents = CatalogSnapshot.read(file);
+
+        assertEquals(T0, contents.completeUntil());
+        assertEquals(entries, contents.entries());
+    }
+
+    @Test
+    void missingOrDamagedFileReadsAsNull() throws IOException {
+        Path file = dir.resolve("catalog.snap");
+        assertNull(CatalogSnapshot.read(file));
+
+        CatalogSnapshot.write(file, T0, entries);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertNull(CatalogSnapshot.read(file));
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        assertNull(CatalogSnapshot.read(file));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.search;
+
+import com.example.demo.model.BookCategory;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterIndexTest {
+
+    private final ClusterIndex index = new ClusterIndex(12, 256);
+
+    @Test
+    void aggregatesFollowMovesAndRemovals() {
+        Random random = new Random(7);
+        Map<Long, double[]> live = new HashMap<>();
+        BookCategory[] categories = BookCategory.values();
+        for (long id = 0; id < 3000; id++) {
+            double lat = 18.5 + random.nextGaussian() * 0.5;
+            double lng = 73.8 + random.nextGaussian() * 0.5;
+            int category = random.nextInt(categories.length);
+            index.put(id, lat, lng, categories[category]);
+            live.put(id, new double[] { lat, lng, category });
+        }
+        for (long id = 0; id < 3000; id += 3) {
+            index.remove(id);
+            live.remove(id);
+        }
+        for (long id = 1; id < 3000; id += 3) {
+            double lat = 19 + random.nextDouble();
+            double lng = 73 + random.nextDouble();
+            index.put(id, lat, lng, BookCategory.HISTORY);
+            live.put(id, new double[] { lat, lng, BookCategory.HISTORY.ordinal() });
+        }
+
+        ClusterIndex.View view = index.view(14, 69, 24, 79, 8);
+        assertEquals(8, view.level());
+        int total = 0;
+        for (ClusterIndex.Cluster cluster : view.clusters()) {
+            // Every book whose level-8 cell holds this cluster's centroid
+            int row = (int) Math.floor((cluster.latitude() + 90) / view.cellDegrees());
+            int col = (int) Math.floor((cluster.longitude() + 180) / view.cellDegrees());
+            List<double[]> members = live.values().stream()
+                    .filter(p -> (int) Math.floor((p[0] + 90) / view.cellDegrees()) == row
+                            && (int) Math.floor((p[1] + 180) / view.cellDegrees()) == col)
+                    .toList();
+            assertEquals(members.size(), cluster.count());
+            assertEquals(members.stream().mapToDouble(p -> p[0]).average().orElseThrow(), cluster.latitude(), 1e-9);
+            assertEquals(members.stream().mapToDouble(p -> p[1]).average().orElseThrow(), cluster.longitude(), 1e-9);
+            int[] counts = new int[categories.length];
+            members.forEach(p -> counts[(int) p[2]]++);
+            int topCount = members.stream().mapToInt(p -> counts[(int) p[2]]).max().orElseThrow();
+            assertEquals(topCount, counts[cluster.topCategories().get(0).ordinal()]);
+            total += cluster.count();
+        }
+        assertEquals(live.size(), total);
+        assertEquals(live.size(), index.size());
+    }
+
+    @Test
+    void wideViewsFallBackToCoarserLevels() {
+        index.put(1L, 10.0, 10.0, BookCategory.FICTION);
+        index.put(2L, 10.001, 10.001, BookCategory.SCIENCE);
+        index.put(3L, 10.002, 10.002, BookCategory.SCIENCE);
+
+        ClusterIndex.View world = index.view(-90, -180, 90, 180, 12);
+        assertTrue(world.level() <= 4, "256 cells cover the world at level 4 at most");
+        assertEquals(1, world.clusters().size());
+        ClusterIndex.Cluster cluster = world.clusters().get(0);
+        assertEquals(3, cluster.count());
+        assertEquals(List.of(BookCategory.SCIENCE, BookCategory.FICTION), cluster.topCategories());
+
+        index.remove(1L);
+        index.remove(2L);
+        index.remove(3L);
+        assertEquals(List.of(), index.view(-90, -180, 90, 180, 12).clusters());
+        assertEquals(List.of(), index.view(9, 9, 11, 11, 12).clusters());
+    }
+}
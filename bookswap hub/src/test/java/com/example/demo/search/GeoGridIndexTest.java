@@ -0,0 +1,112 @@
+package com.example.demo.search;
+
+import com.example.demo.service.BookService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoGridIndexTest {
+
+    private final GeoGridIndex index = new GeoGridIndex(0.2);
+
+    @Test
+    void pagesMatchBruteForceOrder() {
+        Random random = new Random(42);
+        double[][] points = new double[2000][];
+        for (int i = 0; i < points.length; i++) {
+            // Mostly one city, with a few far-away outliers
+            points[i] = i % 50 == 0
+                    ? new double[] { random.nextDouble() * 120 - 60, random.nextDouble() * 340 - 170 }
+                    : new double[] { 18.5 + random.nextGaussian() * 0.3, 73.8 + random.nextGaussian() * 0.3 };
+            index.put(i, points[i][0], points[i][1]);
+        }
+        double lat = 18.52;
+        double lng = 73.85;
+
+        List<GeoGridIndex.Neighbor> expected = new ArrayList<>();
+        for (int i = 0; i < points.length; i++) {
+            expected.add(new GeoGridIndex.Neighbor(i,
+                    BookService.calculateDistance(lat, lng, points[i][0], points[i][1])));
+        }
+        expected.sort(Comparator.comparingDouble(GeoGridIndex.Neighbor::distanceKm)
+                .thenComparingLong(GeoGridIndex.Neighbor::bookId));
+
+        List<GeoGridIndex.Neighbor> paged = new ArrayList<>();
+        double afterKm = -1;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<GeoGridIndex.Neighbor> page = index.nearest(lat, lng, afterKm, afterId, 97, id -> true,
+                    BookService::calculateDistance);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            GeoGridIndex.Neighbor last = page.get(page.size() - 1);
+            afterKm = last.distanceKm();
+            afterId = last.bookId();
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void appliesFilterAndTracksMovesAndRemovals() {
+        index.put(1L, 10.0, 10.0);
+        index.put(2L, 10.01, 10.0);
+        index.put(3L, 10.02, 10.0);
+
+        index.put(1L, 40.0, 40.0);
+        index.remove(2L);
+
+        List<GeoGridIndex.Neighbor> hits = index.nearest(10.0, 10.0, -1, Long.MIN_VALUE, 10, id -> id != 4L,
+                BookService::calculateDistance);
+        assertEquals(List.of(3L, 1L), hits.stream().map(GeoGridIndex.Neighbor::bookId).toList());
+        assertTrue(hits.get(0).distanceKm() < hits.get(1).distanceKm());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void radiusPagesMatchBruteForceWithinTheCircle() {
+        Random random = new Random(7);
+        double[][] points = new double[3000][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] { 59.9 + random.nextGaussian() * 0.5, 10.7 + random.nextGaussian() * 1.0 };
+            index.put(i, points[i][0], points[i][1]);
+        }
+        double lat = 59.91;
+        double lng = 10.75;
+        double radiusKm = 40;
+
+        List<GeoGridIndex.Neighbor> expected = new ArrayList<>();
+        for (int i = 0; i < points.length; i++) {
+            double d = BookService.calculateDistance(lat, lng, points[i][0], points[i][1]);
+            if (d <= radiusKm && i % 3 != 0) {
+                expected.add(new GeoGridIndex.Neighbor(i, d));
+            }
+        }
+        expected.sort(Comparator.comparingDouble(GeoGridIndex.Neighbor::distanceKm)
+                .thenComparingLong(GeoGridIndex.Neighbor::bookId));
+
+        List<GeoGridIndex.Neighbor> paged = new ArrayList<>();
+        double afterKm = -1;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            GeoGridIndex.Within within = index.within(lat, lng, radiusKm, afterKm, afterId, 50, id -> id % 3 != 0,
+                    BookService::calculateDistance);
+            assertEquals(expected.size(), within.total());
+            if (within.page().isEmpty()) {
+                break;
+            }
+            paged.addAll(within.page());
+            GeoGridIndex.Neighbor last = within.page().get(within.page().size() - 1);
+            afterKm = last.distanceKm();
+            afterId = last.bookId();
+        }
+        assertEquals(expected, paged);
+    }
+}
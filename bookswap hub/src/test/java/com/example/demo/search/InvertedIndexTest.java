@@ -0,0 +1,64 @@
+package com.example.demo.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        index.put(1L, "Harry Potter and the Philosopher's Stone", "J. K. Rowling", "A young wizard.");
+        index.put(2L, "The Hobbit", "J. R. R. Tolkien", "A hobbit goes on an adventure with a wizard.");
+        index.put(3L, "Clean Code", "Robert C. Martin", "Writing readable software.");
+    }
+
+    @Test
+    void matchesAllTermsAcrossFieldsCaseInsensitively() {
+        assertArrayEquals(new long[] { 1L }, index.search("ROWLING wizard", 10));
+        assertArrayEquals(new long[] { 3L }, index.search("readable", 10));
+        assertEquals(0, index.search("rowling hobbit", 10).length);
+    }
+
+    @Test
+    void ranksTitleMatchesAboveDescriptionMatches() {
+        index.put(4L, "Wizard Tales", "Anonymous", "Short stories.");
+
+        long[] hits = index.search("wizard", 10);
+
+        assertEquals(3, hits.length);
+        assertEquals(4L, hits[0]);
+    }
+
+    @Test
+    void expandsQueryTermsAsPrefixes() {
+        assertArrayEquals(new long[] { 1L }, index.search("pott", 10));
+    }
+
+    @Test
+    void reflectsUpdatesAndRemovals() {
+        index.put(3L, "Refactoring", "Martin Fowler", "Improving existing code.");
+        assertEquals(0, index.search("readable", 10).length);
+        assertArrayEquals(new long[] { 3L }, index.search("fowler", 10));
+
+        index.remove(2L);
+        assertEquals(0, index.search("hobbit", 10).length);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void aReusedOrdinalKeepsNoTermsOfItsFormerBook() {
+        index.remove(1L);
+        index.put(4L, "Dune", "Frank Herbert", "Desert planet.");
+
+        assertEquals(0, index.search("wizard rowling", 10).length);
+        assertArrayEquals(new long[] { 2L }, index.search("wizard", 10));
+        assertArrayEquals(new long[] { 4L }, index.search("desert", 10));
+        assertEquals(3, index.size());
+    }
+}
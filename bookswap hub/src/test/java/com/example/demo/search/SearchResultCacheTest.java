@@ -0,0 +1,42 @@
+package com.example.demo.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchResultCacheTest {
+
+    private final SearchResultCache<String> cache = new SearchResultCache<>(10);
+
+    private static SearchResultCache.CachedPage page(int size) {
+        return new SearchResultCache.CachedPage(new long[size], null);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByWeight() {
+        cache.put("a", 1, page(4));
+        cache.put("b", 1, page(4));
+        cache.get("a", 1);
+        cache.put("c", 1, page(4));
+
+        assertNotNull(cache.get("a", 1));
+        assertNull(cache.get("b", 1));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void newerCatalogVersionDropsEverythingAndStaleResultsAreNotStored() {
+        cache.put("a", 1, page(2));
+
+        assertNull(cache.get("a", 2));
+        cache.put("b", 1, page(2));
+        assertNull(cache.get("b", 2));
+
+        SearchResultCache.Stats stats = cache.stats();
+        assertEquals(1, stats.invalidations());
+        assertEquals(0, stats.entries());
+        assertEquals(2, stats.misses());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestIndexTest {
+
+    private SuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SuggestIndex();
+        index.put(1L, "Harry Potter and the Philosopher's Stone", "J. K. Rowling");
+        index.put(2L, "Harry Potter and the Chamber of Secrets", "J. K. Rowling");
+        index.put(3L, "The Hobbit", "J. R. R. Tolkien");
+    }
+
+    private static List<String> texts(List<SuggestIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestIndex.Suggestion::text).toList();
+    }
+
+    @Test
+    void completesFromAnyWordStartMostCommonFirst() {
+        index.put(4L, "Rowan's Garden", "Anonymous");
+
+        List<SuggestIndex.Suggestion> hits = index.suggest("Row", 5);
+
+        assertEquals(List.of("J. K. Rowling", "Rowan's Garden"), texts(hits));
+        assertEquals(2, hits.get(0).count());
+        assertEquals("author", hits.get(0).kind());
+        assertEquals(List.of("The Hobbit"), texts(index.suggest("hob", 5)));
+    }
+
+    @Test
+    void dropsPhrasesWhenTheirLastBookGoes() {
+        index.remove(1L);
+        assertEquals(1, index.suggest("rowling", 5).get(0).count());
+
+        index.put(2L, "Chamber Music", "J. K. Rowling");
+        assertTrue(index.suggest("harry", 5).isEmpty());
+        assertEquals(List.of("Chamber Music"), texts(index.suggest("chamber", 5)));
+    }
+}
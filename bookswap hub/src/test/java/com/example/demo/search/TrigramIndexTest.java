@@ -0,0 +1,49 @@
+package com.example.demo.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.put(1L, "Harry Potter and the Philosopher's Stone", "J. K. Rowling");
+        index.put(2L, "The Hobbit", "J. R. R. Tolkien");
+        index.put(3L, "Clean Code", "Robert C. Martin");
+    }
+
+    @Test
+    void findsMisspelledAuthors() {
+        assertArrayEquals(new long[] { 1L }, index.search("Rowlng", 10));
+        assertArrayEquals(new long[] { 2L }, index.search("tolkein", 10));
+    }
+
+    @Test
+    void ranksCloserMatchesFirst() {
+        index.put(4L, "Harry's Garden", "Anonymous");
+
+        long[] hits = index.search("hary poter", 10);
+
+        assertEquals(1L, hits[0]);
+    }
+
+    @Test
+    void ignoresUnrelatedAndTooShortQueries() {
+        assertEquals(0, index.search("quantum", 10).length);
+        assertEquals(0, index.search("ro", 10).length);
+    }
+
+    @Test
+    void forgetsRemovedBooks() {
+        index.remove(1L);
+
+        assertEquals(0, index.search("Rowlng", 10).length);
+        assertEquals(2, index.size());
+    }
+}
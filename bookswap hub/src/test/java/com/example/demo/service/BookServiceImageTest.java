@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CoverImage;
+import com.example.demo.model.Book;
+import com.example.demo.model.BookCategory;
+import com.example.demo.model.BookCondition;
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = "app.images.dir=target/test-images/book-service")
+class BookServiceImageTest {
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aCoverLostFromTheStoreIsRebuiltFromItsDurableCopy() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 60, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] bytes = png.toByteArray();
+        User owner = userRepository.save(new User("cover-owner", "cover-owner@example.com", "secret"));
+
+        Book book = bookService.createBook("Dune", "Frank Herbert", "Desert planet.", new BigDecimal("9.99"),
+                BookCategory.values()[0], BookCondition.values()[0], null, null, null,
+                new MockMultipartFile("image", "dune.png", "image/png", bytes), owner);
+
+        assertArrayEquals(bytes, jdbcTemplate.queryForObject(
+                "SELECT data FROM book_images WHERE book_id = ?", byte[].class, book.getId()));
+
+        Path file = imageStore.path(book.getImageHash());
+        Files.delete(file);
+        assertFalse(imageStore.contains(book.getImageHash()));
+
+        CoverImage cover = bookService.getCover(book.getId()).orElseThrow();
+        assertEquals(book.getImageHash(), cover.hash());
+        assertEquals("image/png", cover.contentType());
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChatParticipants;
+import com.example.demo.model.RequestStatus;
+import com.example.demo.repository.PurchaseRequestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatAccessServiceTest {
+
+    private static final ChatParticipants PENDING =
+            new ChatParticipants(1L, "buyer", 2L, "owner", RequestStatus.PENDING);
+    private static final ChatParticipants APPROVED =
+            new ChatParticipants(1L, "buyer", 2L, "owner", RequestStatus.APPROVED);
+
+    @Mock
+    private PurchaseRequestRepository requestRepository;
+
+    private ChatAccessService chatAccessService;
+
+    @BeforeEach
+    void setUp() {
+        chatAccessService = new ChatAccessService(requestRepository, 2);
+    }
+
+    @Test
+    void servesRepeatLookupsFromMemoryUntilTheRequestChanges() {
+        when(requestRepository.findParticipants(7L)).thenReturn(Optional.of(PENDING), Optional.of(APPROVED));
+
+        assertEquals(PENDING, chatAccessService.participants(7L));
+        assertEquals(PENDING, chatAccessService.participants(7L));
+        chatAccessService.requestChanged(7L);
+        assertEquals(APPROVED, chatAccessService.participants(7L));
+
+        verify(requestRepository, times(2)).findParticipants(7L);
+        assertEquals(1, chatAccessService.stats().hits());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedAndNeverCachesMissingRequests() {
+        when(requestRepository.findParticipants(1L)).thenReturn(Optional.of(PENDING));
+        when(requestRepository.findParticipants(2L)).thenReturn(Optional.of(PENDING));
+        when(requestRepository.findParticipants(3L)).thenReturn(Optional.of(PENDING));
+        when(requestRepository.findParticipants(4L)).thenReturn(Optional.empty());
+
+        chatAccessService.participants(1L);
+        chatAccessService.participants(2L);
+        chatAccessService.participants(1L);
+        chatAccessService.participants(3L);
+        assertNull(chatAccessService.participants(4L));
+        assertNull(chatAccessService.participants(4L));
+        chatAccessService.participants(1L);
+        chatAccessService.participants(2L);
+
+        verify(requestRepository, times(1)).findParticipants(1L);
+        verify(requestRepository, times(2)).findParticipants(2L);
+        verify(requestRepository, times(2)).findParticipants(4L);
+        assertEquals(2, chatAccessService.stats().entries());
+    }
+}
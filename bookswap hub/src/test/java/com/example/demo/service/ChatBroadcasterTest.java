@@ -0,0 +1,44 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatBroadcasterTest {
+
+    private final ChatBroadcaster broadcaster = new ChatBroadcaster();
+
+    @Test
+    void wakesEachSubscriberOfTheConversationOnce() {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        AtomicInteger elsewhere = new AtomicInteger();
+        broadcaster.subscribe(1, first::incrementAndGet);
+        broadcaster.subscribe(1, second::incrementAndGet);
+        broadcaster.subscribe(2, elsewhere::incrementAndGet);
+
+        broadcaster.messageSent(1);
+        broadcaster.messageSent(1);
+
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+        assertEquals(0, elsewhere.get());
+        assertEquals(1, broadcaster.waiting());
+    }
+
+    @Test
+    void cancelledSubscriptionsAreNotWoken() {
+        AtomicInteger calls = new AtomicInteger();
+        Runnable onMessage = calls::incrementAndGet;
+        ChatBroadcaster.Subscription cancelled = broadcaster.subscribe(1, onMessage);
+        broadcaster.subscribe(1, onMessage);
+        cancelled.cancel();
+
+        broadcaster.messageSent(1);
+
+        assertEquals(1, calls.get());
+        assertEquals(0, broadcaster.waiting());
+    }
+}
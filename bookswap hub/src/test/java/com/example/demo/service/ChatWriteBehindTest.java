@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChatLine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatWriteBehindTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private RecentChatMessages recent;
+    private ChatWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:chat-write-behind;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE chat_messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "request_id BIGINT NOT NULL, sender_id BIGINT NOT NULL, "
+                + "content VARCHAR(1000) NOT NULL, sent_at TIMESTAMP)");
+        recent = new RecentChatMessages(50, DataSize.ofMegabytes(1), Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+        jdbcTemplate.execute("DROP TABLE chat_messages");
+    }
+
+    private ChatWriteBehind start(int batchSize, Duration flushInterval) {
+        writeBehind = new ChatWriteBehind(jdbcTemplate, transactionTemplate, recent, new ChatBroadcaster(),
+                true, ChatWriteBehind.Durability.FLUSHED, 1000, batchSize, flushInterval);
+        return writeBehind;
+    }
+
+    @Test
+    void writesInBatchesKeepingEachChatsOrder() throws Exception {
+        start(10, Duration.ofMillis(50));
+        recent.seed(1, 0, List.of(), recent.stamp(1));
+        List<CompletableFuture<ChatLine>> sent = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            sent.add(writeBehind.submit(1 + i % 2, 7, "buyer", "message " + i));
+        }
+
+        long previous = 0;
+        for (CompletableFuture<ChatLine> future : sent) {
+            long id = future.get(5, TimeUnit.SECONDS).id();
+            assertTrue(id > previous, "ids follow send order");
+            previous = id;
+        }
+        assertEquals(List.of("message 0", "message 2", "message 4"),
+                jdbcTemplate.queryForList("SELECT content FROM chat_messages WHERE request_id = 1 ORDER BY id LIMIT 3",
+                        String.class));
+        assertEquals(20, recent.after(1, 0).size(), "stored messages reach the in-memory history");
+        ChatWriteBehind.Stats stats = writeBehind.stats();
+        assertEquals(40, stats.written());
+        assertTrue(stats.batches() <= 8, "40 messages in batches of up to 10, got " + stats.batches());
+    }
+
+    @Test
+    void aBadRowFailsAloneAndTheRestStillLand() throws Exception {
+        start(10, Duration.ofMillis(50));
+        CompletableFuture<ChatLine> before = writeBehind.submit(1, 7, "buyer", "fine");
+        CompletableFuture<ChatLine> bad = writeBehind.submit(1, 7, "buyer", null);
+        CompletableFuture<ChatLine> after = writeBehind.submit(1, 7, "buyer", "also fine");
+
+        assertTrue(before.get(5, TimeUnit.SECONDS).id() < after.get(5, TimeUnit.SECONDS).id());
+        assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertEquals(1, writeBehind.stats().failed());
+    }
+
+    @Test
+    void shutdownWritesWhatIsStillQueued() throws Exception {
+        start(100, Duration.ofSeconds(1));
+        List<CompletableFuture<ChatLine>> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sent.add(writeBehind.submit(1, 7, "buyer", "message " + i));
+        }
+
+        writeBehind.shutdown();
+        for (CompletableFuture<ChatLine> future : sent) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        }
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages", Integer.class));
+        assertThrows(IllegalStateException.class, () -> writeBehind.submit(1, 7, "buyer", "late"));
+    }
+}
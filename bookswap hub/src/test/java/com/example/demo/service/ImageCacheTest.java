@@ -0,0 +1,59 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageCacheTest {
+
+    @TempDir
+    Path dir;
+
+    // Budget of 1600 bytes: entries up to 100 bytes, protected segment up to 1280
+    private final ImageCache cache = new ImageCache(DataSize.ofBytes(1600), Duration.ofSeconds(5));
+
+    private ImageCache.Entry load(long bookId) throws IOException {
+        Path file = Files.write(dir.resolve("f" + bookId), new byte[100]);
+        return cache.load(bookId, "thumb", cache.generation(bookId), file, 100, "\"e\"", "image/jpeg", 0);
+    }
+
+    @Test
+    void coversSeenTwiceSurviveAScanOfCoversSeenOnce() throws IOException {
+        for (long id = 1; id <= 4; id++) {
+            load(id);
+            cache.get(id, "thumb");
+        }
+        for (long id = 100; id < 140; id++) {
+            load(id);
+        }
+
+        for (long id = 1; id <= 4; id++) {
+            assertNotNull(cache.get(id, "thumb"));
+        }
+        assertEquals(1600, cache.stats().residentBytes());
+    }
+
+    @Test
+    void invalidationDropsEntriesAndLoadsStartedBeforeIt() throws IOException {
+        load(1);
+        long before = cache.generation(1);
+        long otherBefore = cache.generation(2);
+        cache.invalidate(1);
+
+        assertNull(cache.get(1, "thumb"));
+        Path file = Files.write(dir.resolve("late"), new byte[10]);
+        assertNull(cache.load(1, "thumb", before, file, 10, "\"old\"", "image/jpeg", 0));
+        assertNotNull(cache.load(2, "thumb", otherBefore, file, 10, "\"e\"", "image/jpeg", 0),
+                "another book's load is unaffected");
+        assertEquals(1, cache.stats().entries());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void identicalUploadsShareOneFileNamedByTheirHash() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), DataSize.ofKilobytes(64), 2);
+        byte[] bytes = "cover".getBytes(StandardCharsets.UTF_8);
+
+        String first = store.store(new ByteArrayInputStream(bytes));
+        String second = store.store(new ByteArrayInputStream(bytes));
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)), first);
+        assertEquals(first, second);
+        assertTrue(store.contains(first));
+        assertArrayEquals(bytes, Files.readAllBytes(store.path(first)));
+        try (var files = Files.walk(dir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void rejectsAnythingButAHexDigest() {
+        ImageStore store = new ImageStore(dir.toString(), DataSize.ofKilobytes(64), 2);
+
+        assertFalse(store.contains("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> store.path("../../etc/passwd"));
+    }
+
+    @Test
+    void uploadsAreTypedByTheirBytesAndCappedInSize() throws Exception {
+        ImageStore store = new ImageStore(dir.toString(), DataSize.ofKilobytes(64), 2);
+        byte[] png = { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0 };
+        byte[] oversized = Arrays.copyOf(png, 65 * 1024);
+
+        assertEquals("image/png", store.storeUpload(new ByteArrayInputStream(png)).contentType());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.storeUpload(new ByteArrayInputStream("<svg></svg>".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IllegalArgumentException.class, () -> store.storeUpload(new ByteArrayInputStream(oversized)));
+        try (var files = Files.walk(dir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+}
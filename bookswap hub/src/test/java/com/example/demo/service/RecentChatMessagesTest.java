@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ChatLine;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecentChatMessagesTest {
+
+    private final RecentChatMessages recent =
+            new RecentChatMessages(3, DataSize.ofKilobytes(64), Duration.ofMinutes(30));
+
+    private static ChatLine line(long id) {
+        return new ChatLine(id, "buyer", "message " + id, LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+
+    private static List<ChatLine> lines(long... ids) {
+        return LongStream.of(ids).mapToObj(RecentChatMessagesTest::line).toList();
+    }
+
+    @Test
+    void answersOnlyAboveTheOldestKeptMessage() {
+        assertNull(recent.after(1, 0));
+        recent.seed(1, 0, lines(2, 5, 7, 9), recent.stamp(1));
+
+        assertEquals(lines(5, 7, 9), recent.after(1, 2));
+        assertEquals(lines(9), recent.after(1, 7));
+        assertNull(recent.after(1, 0), "message 2 was dropped from the ring");
+
+        recent.messageSent(1, line(12));
+        recent.messageSent(1, line(11));
+        assertEquals(lines(9, 11, 12), recent.after(1, 7));
+        assertNull(recent.after(1, 5));
+    }
+
+    @Test
+    void servesTheLatestPageOnlyWhenItIsComplete() {
+        recent.seed(1, 0, lines(2, 3), recent.stamp(1));
+        assertEquals(lines(2, 3), recent.latest(1, 3), "a floor of 0 is the whole chat");
+
+        recent.seed(2, 4, lines(5, 6), recent.stamp(2));
+        assertNull(recent.latest(2, 3), "older messages may sit below the floor");
+        assertEquals(lines(6), recent.latest(2, 1));
+        recent.messageSent(2, line(7));
+        assertEquals(lines(5, 6, 7), recent.latest(2, 3));
+    }
+
+    @Test
+    void dropsASeedThatRacedWithASend() {
+        long stamp = recent.stamp(1);
+        // Not yet active, so the send is not kept; the seed read may have missed it
+        recent.messageSent(1, line(4));
+        recent.seed(1, 0, lines(2, 3), stamp);
+        assertNull(recent.after(1, 0));
+
+        recent.seed(1, 0, lines(2, 3, 4), recent.stamp(1));
+        assertEquals(lines(2, 3, 4), recent.after(1, 0));
+    }
+
+    @Test
+    void forgottenChatsGoBackToTheDatabase() {
+        recent.seed(1, 0, lines(2, 3), recent.stamp(1));
+        recent.seed(2, 0, lines(4), recent.stamp(2));
+        long inFlight = recent.stamp(1);
+
+        recent.forget(1);
+        assertNull(recent.after(1, 0));
+        assertEquals(lines(4), recent.after(2, 0));
+        recent.seed(1, 0, lines(2, 3), inFlight);
+        assertNull(recent.after(1, 0), "a read from before the change is not kept");
+
+        recent.forgetAll();
+        assertNull(recent.after(2, 0));
+        assertEquals(0, recent.stats().bytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedChatsPastTheMemoryBudget() {
+        RecentChatMessages small = new RecentChatMessages(3, DataSize.ofBytes(1000), Duration.ofMinutes(30));
+        small.seed(1, 0, lines(1, 2), small.stamp(1));
+        small.seed(2, 0, lines(3, 4), small.stamp(2));
+        small.after(1, 0);
+        small.seed(3, 0, lines(5, 6), small.stamp(3));
+
+        assertEquals(lines(1, 2), small.after(1, 0));
+        assertNull(small.after(2, 0));
+        assertEquals(lines(5, 6), small.after(3, 0));
+    }
+}
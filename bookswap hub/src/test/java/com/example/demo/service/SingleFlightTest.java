@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+
+    // Starts a load of "k" that blocks until release is counted down
+    private Future<String> startBlockingLoad(ExecutorService pool, CountDownLatch started, CountDownLatch release,
+            AtomicInteger calls, RuntimeException failure) {
+        return pool.submit(() -> flight.load("k", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            if (failure != null) {
+                throw failure;
+            }
+            return "value";
+        }));
+    }
+
+    @Test
+    void concurrentLoadsOfOneKeyShareOneCall() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            Future<String> leader = startBlockingLoad(pool, started, release, calls, null);
+            started.await();
+            Future<String> a = pool.submit(() -> flight.load("k", () -> "other"));
+            Future<String> b = pool.submit(() -> flight.load("k", () -> "other"));
+            waitForWaiters(2);
+            release.countDown();
+
+            assertEquals("value", leader.get());
+            assertEquals("value", a.get());
+            assertEquals("value", b.get());
+            assertEquals(1, calls.get());
+            assertEquals(1, flight.stats().loads());
+            assertEquals(0, flight.stats().inFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+        // Nothing is kept once the load is done
+        assertEquals("fresh", flight.load("k", () -> "fresh"));
+    }
+
+    @Test
+    void waitersSeeTheLeadersException() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalArgumentException failure = new IllegalArgumentException("boom");
+        try {
+            Future<String> leader = startBlockingLoad(pool, started, release, new AtomicInteger(), failure);
+            started.await();
+            Future<String> waiter = pool.submit(() -> {
+                try {
+                    return flight.load("k", () -> "other");
+                } catch (IllegalArgumentException e) {
+                    assertSame(failure, e);
+                    return "rethrown";
+                }
+            });
+            waitForWaiters(1);
+            release.countDown();
+
+            assertSame(failure, assertThrows(ExecutionException.class, leader::get).getCause());
+            assertEquals("rethrown", waiter.get());
+            assertEquals(1, flight.stats().failures());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiterGivesUpAfterTheTimeout() throws Exception {
+        SingleFlight<String, String> quick = new SingleFlight<>(Duration.ofMillis(50));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.submit(() -> quick.load("k", () -> {
+                started.countDown();
+                await(release);
+                return "slow";
+            }));
+            started.await();
+
+            assertThrows(IllegalStateException.class, () -> quick.load("k", () -> "other"));
+            assertEquals(1, quick.stats().timeouts());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    private void waitForWaiters(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.stats().coalesced() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
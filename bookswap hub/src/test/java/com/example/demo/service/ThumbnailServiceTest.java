@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rendersEveryVariantWithinItsBoxKeepingAspectRatio() throws IOException {
+        ImageStore store = new ImageStore(dir.toString(), DataSize.ofKilobytes(64), 2);
+        ThumbnailService thumbnails = new ThumbnailService(store, 1, 4, 40_000_000);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1200, 900, BufferedImage.TYPE_INT_ARGB), "png", png);
+        String hash = store.store(new ByteArrayInputStream(png.toByteArray()));
+
+        thumbnails.render(hash);
+
+        BufferedImage thumb = ImageIO.read(thumbnails.find(hash, ThumbnailService.Variant.THUMB).orElseThrow().toFile());
+        BufferedImage medium = ImageIO.read(thumbnails.find(hash, ThumbnailService.Variant.MEDIUM).orElseThrow().toFile());
+        assertEquals(240, thumb.getWidth());
+        assertEquals(180, thumb.getHeight());
+        assertEquals(600, medium.getWidth());
+        assertEquals(450, medium.getHeight());
+    }
+
+    @Test
+    void smallImagesAreNotUpscaled() {
+        BufferedImage small = new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage scaled = ThumbnailService.scale(small, ThumbnailService.Variant.MEDIUM);
+
+        assertEquals(100, scaled.getWidth());
+        assertEquals(150, scaled.getHeight());
+    }
+
+    @Test
+    void aLongStripIsSubsampledByItsLongSideAndOversizedSourcesAreSkipped() throws IOException {
+        Path strip = dir.resolve("strip.png");
+        ImageIO.write(new BufferedImage(12000, 40, BufferedImage.TYPE_INT_RGB), "png", strip.toFile());
+
+        BufferedImage decoded = ThumbnailService.decode(strip, 40_000_000);
+        assertEquals(1200, decoded.getWidth());
+        assertEquals(4, decoded.getHeight());
+        assertNull(ThumbnailService.decode(strip, 12000 * 40 - 1));
+
+        ImageStore store = new ImageStore(dir.resolve("store").toString(), DataSize.ofKilobytes(64), 2);
+        ThumbnailService thumbnails = new ThumbnailService(store, 1, 4, 100_000);
+        String hash = store.store(Files.newInputStream(strip));
+        thumbnails.render(hash);
+        assertTrue(thumbnails.find(hash, ThumbnailService.Variant.THUMB).isEmpty());
+    }
+}